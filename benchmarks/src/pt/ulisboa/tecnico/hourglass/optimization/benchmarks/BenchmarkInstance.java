@@ -0,0 +1,95 @@
+package pt.ulisboa.tecnico.hourglass.optimization.benchmarks;
+
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.OptimizationSolver;
+
+import java.util.Arrays;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Instance of the performance test with fixed prices, so that every benchmark run solves the same problem: half
+ * hot partitions first, then the cold ones, and enough machines of every type to hold all of them.
+ */
+public class BenchmarkInstance {
+
+    private static final int[] CAPACITY_PER_INSTANCE_TYPE = new int[]{1, 2, 4, 8, 16};
+
+    /* c4 spot prices in fixed point, CL to C8XL */
+    private static final int[] COST_PER_INSTANCE_TYPE = new int[]{263, 511, 1039, 2018, 4297};
+
+    private static final int HOT_PARTITION_SIZE = 4;
+
+    private static final int COLD_PARTITION_SIZE = 1;
+
+    private final int[] partitionSize;
+
+    private final int[] costPerMachine;
+
+    private final int[] capacityPerMachine;
+
+    private final int[] numInstancesPerType;
+
+    public BenchmarkInstance(int numPartitions) {
+
+        int numHotPartitions = numPartitions / 2;
+
+        this.partitionSize = new int[numPartitions];
+
+        Arrays.fill(partitionSize, 0, numHotPartitions, HOT_PARTITION_SIZE);
+        Arrays.fill(partitionSize, numHotPartitions, numPartitions, COLD_PARTITION_SIZE);
+
+        this.numInstancesPerType = new int[CAPACITY_PER_INSTANCE_TYPE.length];
+
+        int numMachines = 0;
+
+        for (int t = 0; t < numInstancesPerType.length; t++) {
+
+            int capacity = CAPACITY_PER_INSTANCE_TYPE[t];
+
+            int numMachinesForHot = capacity >= HOT_PARTITION_SIZE ? numHotPartitions / (capacity / HOT_PARTITION_SIZE) : 0;
+            int numMachinesForCold = (numPartitions - numHotPartitions) / capacity;
+
+            numInstancesPerType[t] = numMachinesForHot + numMachinesForCold + 2;
+            numMachines += numInstancesPerType[t];
+        }
+
+        this.costPerMachine = new int[numMachines];
+        this.capacityPerMachine = new int[numMachines];
+
+        int prevIndex = 0;
+
+        for (int t = 0; t < numInstancesPerType.length; t++) {
+
+            Arrays.fill(costPerMachine, prevIndex, prevIndex + numInstancesPerType[t], COST_PER_INSTANCE_TYPE[t]);
+            Arrays.fill(capacityPerMachine, prevIndex, prevIndex + numInstancesPerType[t], CAPACITY_PER_INSTANCE_TYPE[t]);
+
+            prevIndex += numInstancesPerType[t];
+        }
+    }
+
+    public <T extends OptimizationSolver> T setInput(T solver) {
+
+        solver.setPartitionSize(partitionSize)
+                .setCostPerMachine(costPerMachine)
+                .setCapacityPerMachine(capacityPerMachine)
+                .setNumInstancesPerType(numInstancesPerType);
+
+        return solver;
+    }
+
+    public int[] getPartitionSize() {
+        return partitionSize;
+    }
+
+    public int[] getCostPerMachine() {
+        return costPerMachine;
+    }
+
+    public int[] getCapacityPerMachine() {
+        return capacityPerMachine;
+    }
+
+    public int[] getNumInstancesPerType() {
+        return numInstancesPerType;
+    }
+}
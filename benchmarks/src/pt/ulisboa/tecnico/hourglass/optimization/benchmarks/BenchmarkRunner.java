@@ -0,0 +1,33 @@
+package pt.ulisboa.tecnico.hourglass.optimization.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Runs the benchmarks of this package with the allocation profiler, reporting the bytes allocated per operation
+ * next to the times. The JMH command line options (e.g. -p numPartitions=2000 or a benchmark name regex, which
+ * replaces the default of every benchmark of the package) are passed through.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class);
+
+        //the includes of both are matched, so the default would run everything
+        if(commandLineOptions.getIncludes().isEmpty()) {
+            options.include(BenchmarkRunner.class.getPackage().getName() + ".*Benchmark");
+        }
+
+        new Runner(options.build()).run();
+    }
+}
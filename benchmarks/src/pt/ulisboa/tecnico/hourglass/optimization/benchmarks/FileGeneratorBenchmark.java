@@ -0,0 +1,94 @@
+package pt.ulisboa.tecnico.hourglass.optimization.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.cplex.OptimizationSolverCPLEX;
+import pt.ulisboa.tecnico.hourglass.optimization.writers.FileGenerator;
+import pt.ulisboa.tecnico.hourglass.optimization.writers.lp.LPFileGenerator;
+import pt.ulisboa.tecnico.hourglass.optimization.writers.opb.OPBFileGenerator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Throughput of the LP and OPB generators writing the whole model to a channel that discards it, so that the disk
+ * is left out of the measurement. The result is the number of bytes written.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class FileGeneratorBenchmark {
+
+    @Param({"500", "1000", "2000"})
+    public int numPartitions;
+
+    @Param({"LP", "OPB"})
+    public String format;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private BenchmarkInstance instance;
+
+    private List<int[]> zeroVars;
+
+    private FileGenerator generator;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+
+        this.instance = new BenchmarkInstance(numPartitions);
+
+        //the zero variables come from the hot/cold restrictions of the CPLEX model
+        OptimizationSolverCPLEX solver = instance.setInput(new OptimizationSolverCPLEX());
+
+        solver.buildModel();
+        solver.end();
+
+        this.zeroVars = solver.getZeroVars();
+
+        this.generator = ("LP".equals(format) ? new LPFileGenerator() : new OPBFileGenerator()).setParallel(parallel);
+    }
+
+    @Benchmark
+    public long writeModel() throws IOException {
+
+        NullChannel channel = new NullChannel();
+
+        generator.writeModel(channel, instance.getPartitionSize(), instance.getCostPerMachine(), instance.getCapacityPerMachine(), zeroVars);
+
+        return channel.bytesWritten;
+    }
+
+    private static class NullChannel implements WritableByteChannel {
+
+        private long bytesWritten;
+
+        @Override
+        public int write(ByteBuffer src) {
+
+            int result = src.remaining();
+
+            src.position(src.limit());
+            bytesWritten += result;
+
+            return result;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
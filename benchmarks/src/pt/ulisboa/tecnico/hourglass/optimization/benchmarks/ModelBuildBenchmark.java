@@ -0,0 +1,42 @@
+package pt.ulisboa.tecnico.hourglass.optimization.benchmarks;
+
+import ilog.concert.IloException;
+import org.openjdk.jmh.annotations.*;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.cplex.OptimizationSolverCPLEX;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Construction of the CPLEX model (variables, constraints and objective) without solving it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ModelBuildBenchmark {
+
+    @Param({"500", "1000", "2000"})
+    public int numPartitions;
+
+    private OptimizationSolverCPLEX solver;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.solver = new BenchmarkInstance(numPartitions).setInput(new OptimizationSolverCPLEX());
+    }
+
+    @Benchmark
+    public void buildModel() throws IloException {
+        solver.buildModel();
+    }
+
+    /* the model of the previous invocation is released outside of the measurement */
+    @TearDown(Level.Invocation)
+    public void endModel() {
+        solver.end();
+    }
+}
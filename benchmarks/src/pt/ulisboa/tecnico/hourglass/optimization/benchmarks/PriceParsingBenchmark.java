@@ -0,0 +1,72 @@
+package pt.ulisboa.tecnico.hourglass.optimization.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import pt.ulisboa.tecnico.hourglass.optimization.util.PriceSeries;
+import pt.ulisboa.tecnico.hourglass.optimization.util.SpotInstancesPriceReader;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Parsing of a spot price history file, bypassing the process cache and the snapshot. The file is generated once
+ * per trial in the format of the AWS CLI output, newest data point first.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class PriceParsingBenchmark {
+
+    private static final long FIRST_TIMESTAMP = Instant.parse("2017-04-01T00:00:00.000Z").toEpochMilli();
+
+    @Param({"10000", "100000"})
+    public int numDataPoints;
+
+    private Path jsonFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        this.jsonFile = Files.createTempFile("spot-price-history", ".json");
+
+        Random random = new Random(0);
+
+        try (BufferedWriter writer = Files.newBufferedWriter(jsonFile, StandardCharsets.US_ASCII)) {
+
+            writer.write("{\n    \"SpotPriceHistory\": [\n");
+
+            for (int i = numDataPoints - 1; i >= 0; i--) {
+
+                writer.write("        {\n");
+                writer.write("            \"Timestamp\": \"" + Instant.ofEpochMilli(FIRST_TIMESTAMP + i * 60_000L) + "\",\n");
+                writer.write("            \"ProductDescription\": \"Linux/UNIX\",\n");
+                writer.write("            \"InstanceType\": \"c4.large\",\n");
+                writer.write("            \"SpotPrice\": \"0." + String.format("%06d", 20000 + random.nextInt(10000)) + "\",\n");
+                writer.write("            \"AvailabilityZone\": \"us-east-1b\"\n");
+                writer.write(i > 0 ? "        },\n" : "        }\n");
+            }
+
+            writer.write("    ]\n}\n");
+        }
+    }
+
+    @Benchmark
+    public PriceSeries parseSeries() throws IOException {
+        return SpotInstancesPriceReader.parseSeries(jsonFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(jsonFile);
+    }
+}
@@ -0,0 +1,48 @@
+package pt.ulisboa.tecnico.hourglass.optimization.benchmarks;
+
+import ilog.concert.IloException;
+import org.openjdk.jmh.annotations.*;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.cplex.OptimizationSolverCPLEX;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.util.Solution;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Reading the assignment of a solved CPLEX model back into a Solution. The model is solved once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SolutionExtractionBenchmark {
+
+    private static final double SOLVE_TIME_LIMIT = 60;
+
+    @Param({"500", "1000", "2000"})
+    public int numPartitions;
+
+    private OptimizationSolverCPLEX solver;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+
+        this.solver = new BenchmarkInstance(numPartitions).setInput(new OptimizationSolverCPLEX());
+
+        solver.setTimeLimit(SOLVE_TIME_LIMIT);
+        solver.solve();
+    }
+
+    @Benchmark
+    public Solution readSolution() throws IloException {
+        return solver.readSolution();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        solver.end();
+    }
+}
@@ -1,63 +1,291 @@
 package pt.ulisboa.tecnico.hourglass.optimization;
 
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.OptimizationSolver;
 import pt.ulisboa.tecnico.hourglass.optimization.solvers.cplex.OptimizationSolverCPLEX;
-import pt.ulisboa.tecnico.hourglass.optimization.util.DataPoint;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.cplex.OptimizationSolverCPLEXAggregated;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.cplex.OptimizationSolverCPLEXPatterns;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.heuristic.OptimizationSolverHeuristic;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.portfolio.OptimizationSolverPortfolio;
+import pt.ulisboa.tecnico.hourglass.optimization.util.PriceHistory;
+import pt.ulisboa.tecnico.hourglass.optimization.util.RollingPriceHistoryStatistics;
 import pt.ulisboa.tecnico.hourglass.optimization.writers.lp.LPFileGenerator;
 import pt.ulisboa.tecnico.hourglass.optimization.writers.opb.OPBFileGenerator;
 import pt.ulisboa.tecnico.hourglass.optimization.util.SpotInstancesPriceReader;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 /**
  * Created by Pedro Joaquim.
+ *
+ * Scaling sweep: solves every combination of partition count, seed, solver and time limit the given number of
+ * times and records the time of each phase, the peak heap and the objective of every run in a CSV file, or a JSON
+ * one when the output ends in .json. Arguments are name=value pairs, lists being comma separated, e.g.
+ *
+ *     partitions=1000,10000,100000 hotRatio=0.5 seeds=1,2,3 solvers=cplex,heuristic timeLimits=0,60
+ *     repetitions=3 writeFiles=false output=results.json
+ *
+ * The seed picks the moment of the price history whose mean prices are used as costs, a fixed one being used when
+ * no seeds are given so that runs are comparable. The LP and OPB files are only written for the cplex solver,
+ * which provides the zero variables.
  */
 public class OptimizationPerformanceTest{
 
         private int[] MEM_FACTOR_PER_INSTANCE_TYPE = new int[]{1,2,4,8,16};
 
-        private static final int[] NUM_PARTITIONS = new int[]{2000};
-
         private static final int HOT_PARTITION_SIZE = 4;
 
         private static final int COLD_PARTITION_SIZE = 1;
 
+        private static final long PRICE_WINDOW_MILLIS = 6 * 60 * 60 * 1000L;
+
+        private static final long DEFAULT_SEED = 1;
+
+        private static final String[] CSV_COLUMNS = new String[]{"solver", "partitions", "hotRatio", "seed", "timeLimit",
+                "repetition", "modelBuildMillis", "solveMillis", "extractionMillis", "totalSolveMillis", "fileWriteMillis",
+                "peakHeapBytes", "objective"};
+
+        private int[] numPartitionsList = new int[]{2000};
+
+        private double hotRatio = 0.5;
+
+        private long[] seeds = new long[]{DEFAULT_SEED};
+
+        private String[] solvers = new String[]{"cplex"};
+
+        private double[] timeLimits = new double[]{0};
+
+        private int repetitions = 1;
+
+        private boolean writeFiles = true;
+
+        private String output = "performance-results.csv";
+
         public static void main(String[] args) throws Exception {
             OptimizationPerformanceTest app = new OptimizationPerformanceTest();
+            app.parseArgs(args);
             app.start();
         }
 
+        private void parseArgs(String[] args) {
+
+            for (String arg : args) {
+
+                int separator = arg.indexOf('=');
+
+                if(separator < 0) {
+                    throw new IllegalArgumentException("EXPECTED NAME=VALUE, GOT " + arg);
+                }
+
+                String name = arg.substring(0, separator);
+                String[] values = arg.substring(separator + 1).split(",");
+
+                switch (name) {
+                    case "partitions": numPartitionsList = Arrays.stream(values).mapToInt(Integer::parseInt).toArray(); break;
+                    case "hotRatio": hotRatio = Double.parseDouble(values[0]); break;
+                    case "seeds": seeds = Arrays.stream(values).mapToLong(Long::parseLong).toArray(); break;
+                    case "solvers": solvers = values; break;
+                    case "timeLimits": timeLimits = Arrays.stream(values).mapToDouble(Double::parseDouble).toArray(); break;
+                    case "repetitions": repetitions = Integer.parseInt(values[0]); break;
+                    case "writeFiles": writeFiles = Boolean.parseBoolean(values[0]); break;
+                    case "output": output = values[0]; break;
+                    default: throw new IllegalArgumentException("UNKNOWN ARGUMENT " + name);
+                }
+            }
+        }
+
         private void start() throws Exception {
 
-            for (int numPartitions : NUM_PARTITIONS) {
+            PriceHistory priceHistory = SpotInstancesPriceReader.readPriceHistory();
+
+            List<SweepResult> results = new ArrayList<>();
+
+            for (int numPartitions : numPartitionsList) {
+                for (long seed : seeds) {
+
+                    System.out.println("");
+                    System.out.println("[INFO] SOLVING FOR " + numPartitions + " PARTITIONS WITH SEED " + seed);
+
+                    int[] partitionsSize = createPartitionsSizeArray(numPartitions);
+
+                    int[][] costAndCapacity = createCostPerMachineAndCapacityPerMachine(numPartitions, priceHistory, seed);
+
+                    for (String solverName : solvers) {
+                        for (double timeLimit : timeLimits) {
+                            for (int repetition = 0; repetition < repetitions; repetition++) {
+
+                                SweepResult result = run(solverName, partitionsSize, costAndCapacity, timeLimit);
+
+                                result.seed = seed;
+                                result.repetition = repetition;
+
+                                System.out.println("[INFO] " + solverName.toUpperCase() + " SOLVE TIME = " + result.totalSolveNanos / 1000000 + " MILLIS, COST = " + result.objective);
+
+                                results.add(result);
+                            }
+                        }
+                    }
+
+                    //written after every instance so that a long sweep keeps what it already measured
+                    writeResults(results);
+                }
+            }
+
+            System.out.println("[INFO] RESULTS WRITTEN TO " + output);
+        }
+
+        private SweepResult run(String solverName, int[] partitionsSize, int[][] costAndCapacity, double timeLimit) throws Exception {
+
+            OptimizationSolver solver = createSolver(solverName);
+
+            solver.setPartitionSize(partitionsSize)
+                    .setCostPerMachine(costAndCapacity[0])
+                    .setCapacityPerMachine(costAndCapacity[1])
+                    .setNumInstancesPerType(costAndCapacity[2])
+                    .setTimeLimit(timeLimit);
+
+            SweepResult result = new SweepResult();
+
+            result.solverName = solverName;
+            result.numPartitions = partitionsSize.length;
+            result.hotRatio = hotRatio;
+            result.timeLimit = timeLimit;
+
+            System.gc();
+            resetPeakHeap();
+
+            try {
+
+                long start = System.nanoTime();
+                solver.solve();
+                result.totalSolveNanos = System.nanoTime() - start;
+
+                Map<String, Long> phaseTimes = solver.getPhaseTimes();
+
+                result.modelBuildNanos = phaseTimes.getOrDefault(OptimizationSolver.MODEL_BUILD_PHASE, 0L);
+                result.solveNanos = phaseTimes.getOrDefault(OptimizationSolver.SOLVE_PHASE, 0L);
+                result.extractionNanos = phaseTimes.getOrDefault(OptimizationSolver.EXTRACTION_PHASE, 0L);
+                result.objective = solver.getSolution().getCost();
+
+                if(writeFiles && solver instanceof OptimizationSolverCPLEX) {
+
+                    List<int[]> zeroVars = ((OptimizationSolverCPLEX) solver).getZeroVars();
+
+                    start = System.nanoTime();
+                    new OPBFileGenerator().createFile(partitionsSize, costAndCapacity[0], costAndCapacity[1], zeroVars);
+                    new LPFileGenerator().createFile(partitionsSize, costAndCapacity[0], costAndCapacity[1], zeroVars);
+                    result.fileWriteNanos = System.nanoTime() - start;
+                }
+
+                result.peakHeapBytes = getPeakHeap();
+
+            } finally {
+                solver.end();
+            }
+
+            return result;
+        }
+
+        private OptimizationSolver createSolver(String solverName) {
+
+            switch (solverName) {
+                case "cplex": return new OptimizationSolverCPLEX();
+                case "cplex-aggregated": return new OptimizationSolverCPLEXAggregated();
+                case "cplex-patterns": return new OptimizationSolverCPLEXPatterns();
+                case "heuristic": return new OptimizationSolverHeuristic();
+                case "portfolio": return new OptimizationSolverPortfolio(new OptimizationSolverCPLEX(), new OptimizationSolverHeuristic());
+                default: throw new IllegalArgumentException("UNKNOWN SOLVER " + solverName);
+            }
+        }
+
+        private void resetPeakHeap() {
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if(pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+            }
+        }
+
+        /**
+         * @return the sum of the peaks of the heap pools since the last reset, an upper bound of the peak heap usage
+         */
+        private long getPeakHeap() {
+
+            long result = 0;
+
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if(pool.getType() == MemoryType.HEAP) result += pool.getPeakUsage().getUsed();
+            }
+
+            return result;
+        }
+
+        private void writeResults(List<SweepResult> results) throws IOException {
+
+            boolean json = output.endsWith(".json");
+
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8))) {
+
+                if(json) {
+                    writer.println("[");
+                } else {
+                    writer.println(String.join(",", CSV_COLUMNS));
+                }
+
+                for (int i = 0; i < results.size(); i++) {
+
+                    Object[] values = results.get(i).getValues();
+
+                    if(json) {
+
+                        StringBuilder line = new StringBuilder("  {");
+
+                        for (int c = 0; c < CSV_COLUMNS.length; c++) {
+
+                            if(c > 0) line.append(", ");
 
-                System.out.println("");
-                System.out.println("[INFO] SOLVING FOR " + numPartitions + " PARTITIONS");
+                            line.append('"').append(CSV_COLUMNS[c]).append("\": ");
 
-                int[] partitionsSize = createPartitionsSizeArray(numPartitions);
+                            if(values[c] instanceof String) {
+                                line.append('"').append(values[c]).append('"');
+                            } else {
+                                line.append(values[c]);
+                            }
+                        }
 
-                int[][] costAndCapacity = createCostPerMachineAndCapacityPerMachine(numPartitions);
+                        writer.println(line.append(i < results.size() - 1 ? "}," : "}"));
 
-                OptimizationSolverCPLEX cplexSolver = new OptimizationSolverCPLEX();
+                    } else {
 
-                cplexSolver.setPartitionSize(partitionsSize)
-                        .setCostPerMachine(costAndCapacity[0])
-                        .setCapacityPerMachine(costAndCapacity[1])
-                        .setNumInstancesPerType(costAndCapacity[2]);
+                        StringBuilder line = new StringBuilder();
 
-                long start = System.currentTimeMillis();
-                cplexSolver.solve();
-                long end = System.currentTimeMillis();
+                        for (int c = 0; c < CSV_COLUMNS.length; c++) {
 
-                new OPBFileGenerator().createFile(partitionsSize, costAndCapacity[0], costAndCapacity[1], cplexSolver.getZeroVars());
-                new LPFileGenerator().createFile(partitionsSize, costAndCapacity[0], costAndCapacity[1], cplexSolver.getZeroVars());
+                            if(c > 0) line.append(',');
 
-                System.out.println("[INFO] SOLVE TIME = " + (end - start) + " MILLIS");
+                            line.append(values[c] == null ? "" : values[c]);
+                        }
+
+                        writer.println(line);
+                    }
+                }
+
+                if(json) {
+                    writer.println("]");
+                }
             }
         }
 
-        private int[][] createCostPerMachineAndCapacityPerMachine(int numPartitions) {
+        private int[][] createCostPerMachineAndCapacityPerMachine(int numPartitions, PriceHistory priceHistory, long seed) {
 
             int[][] result = new int[3][];
 
@@ -65,7 +293,7 @@ public class OptimizationPerformanceTest{
 
             int totalNumMachines = 0;
 
-            int[] costPerInstanceType = readRandomCostPerMachine();
+            int[] costPerInstanceType = readRandomCostPerMachine(priceHistory, seed);
 
             for (int aNumMachinesPerType : numMachinesPerType) {
                 totalNumMachines += aNumMachinesPerType;
@@ -96,26 +324,19 @@ public class OptimizationPerformanceTest{
             return result;
         }
 
-        private int[] readRandomCostPerMachine() {
+        private int[] readRandomCostPerMachine(PriceHistory priceHistory, long seed) {
 
-            int[] result = new int[5];
-
-            List<DataPoint> clDatapoints = SpotInstancesPriceReader.readCLDatapoints();
-            List<DataPoint> cxlDatapoints = SpotInstancesPriceReader.readCXLDatapoints();
-            List<DataPoint> c2xlDatapoints = SpotInstancesPriceReader.readC2XLDatapoints();
-            List<DataPoint> c4xlDatapoints = SpotInstancesPriceReader.readC4XLDatapoints();
-            List<DataPoint> c8xlDatapoints = SpotInstancesPriceReader.readC8XLDatapoints();
+            long firstTimestamp = priceHistory.getFirstTimestamp();
+            long lastTimestamp = priceHistory.getLastTimestamp();
 
-            Random rnd = new Random();
+            //the mean prices of every instance type over the same window ending at a random moment
+            long randomTimestamp = firstTimestamp + (long) (new Random(seed).nextDouble() * (lastTimestamp - firstTimestamp));
 
-            int randomIndex = rnd.nextInt(clDatapoints.size());
+            RollingPriceHistoryStatistics priceStatistics = new RollingPriceHistoryStatistics(priceHistory, PRICE_WINDOW_MILLIS);
 
-            result[0] = clDatapoints.get(Math.min(clDatapoints.size() - 1, randomIndex)).getPriceInt();
-            result[1] = cxlDatapoints.get(Math.min(cxlDatapoints.size() - 1, randomIndex)).getPriceInt();
-            result[2] = c2xlDatapoints.get(Math.min(c2xlDatapoints.size() - 1, randomIndex)).getPriceInt();
-            result[3] = c4xlDatapoints.get(Math.min(c4xlDatapoints.size() - 1, randomIndex)).getPriceInt();
-            result[4] = c8xlDatapoints.get(Math.min(c8xlDatapoints.size() - 1, randomIndex)).getPriceInt();
+            priceStatistics.advanceTo(randomTimestamp);
 
+            int[] result = priceStatistics.getMeanPrices();
 
             System.out.println("[INFO] COST CL: " + result[0]);
             System.out.println("[INFO] COST CXL: " + result[1]);
@@ -126,9 +347,13 @@ public class OptimizationPerformanceTest{
             return result;
         }
 
+        private int calcNumHotPartitions(int numPartitions) {
+            return (int) Math.round(numPartitions * hotRatio);
+        }
+
         private int[] calcNumMachinesPerType(int numPartitions) {
 
-            int numHotPartitions = numPartitions / 2;
+            int numHotPartitions = calcNumHotPartitions(numPartitions);
             int numColdPartitions = numPartitions - numHotPartitions;
 
             int[] result = new int[5];
@@ -158,11 +383,54 @@ public class OptimizationPerformanceTest{
 
             int[] result = new int[numPartitions];
 
-            int midIndex = (numPartitions / 2);
+            int midIndex = calcNumHotPartitions(numPartitions);
 
             Arrays.fill(result, 0, midIndex, HOT_PARTITION_SIZE);
             Arrays.fill(result, midIndex, numPartitions, COLD_PARTITION_SIZE);
 
             return result;
         }
+
+        private static class SweepResult {
+
+            private String solverName;
+
+            private int numPartitions;
+
+            private double hotRatio;
+
+            private double timeLimit;
+
+            private long seed;
+
+            private int repetition;
+
+            private long modelBuildNanos;
+
+            private long solveNanos;
+
+            private long extractionNanos;
+
+            private long totalSolveNanos;
+
+            /* -1 when no files were written */
+            private long fileWriteNanos = -1;
+
+            private long peakHeapBytes;
+
+            private int objective;
+
+            /**
+             * @return the values in the order of CSV_COLUMNS, null for the ones not measured
+             */
+            private Object[] getValues() {
+                return new Object[]{solverName, numPartitions, hotRatio, seed, timeLimit,
+                        repetition, toMillis(modelBuildNanos), toMillis(solveNanos), toMillis(extractionNanos),
+                        toMillis(totalSolveNanos), fileWriteNanos < 0 ? null : toMillis(fileWriteNanos), peakHeapBytes, objective};
+            }
+
+            private static double toMillis(long nanos) {
+                return nanos / 1e6;
+            }
+        }
 }
@@ -0,0 +1,217 @@
+package pt.ulisboa.tecnico.hourglass.optimization.replay;
+
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.OptimizationSolver;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.util.PriceRanges;
+import pt.ulisboa.tecnico.hourglass.optimization.util.PriceHistory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Back-testing of a solver over the price history: the deployment is planned at the start of the period and
+ * planned again, through {@link OptimizationSolver#updateCostPerInstanceType(int[])}, every time the price of
+ * some instance type changes, the cost of each plan being charged until the next one. The period is split in
+ * independent time windows, each one replayed by its own solver, in parallel.
+ *
+ * With price ranges enabled, the price interval of every instance type over which the plan stays optimal is
+ * computed after each solve and price changes that stay inside them do not trigger a new plan.
+ */
+public class PriceReplay {
+
+    private final PriceHistory priceHistory;
+
+    private final Supplier<? extends OptimizationSolver> solverFactory;
+
+    private int[] partitionSize;
+
+    private int[] capacityPerMachine;
+
+    private int[] numInstancesPerType;
+
+    private int numWindows = Runtime.getRuntime().availableProcessors();
+
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    private boolean usePriceRanges;
+
+    public PriceReplay(PriceHistory priceHistory, Supplier<? extends OptimizationSolver> solverFactory) {
+        this.priceHistory = priceHistory;
+        this.solverFactory = solverFactory;
+    }
+
+    public PriceReplay setPartitionSize(int[] partitionSize) {
+        this.partitionSize = partitionSize;
+        return this;
+    }
+
+    public PriceReplay setCapacityPerMachine(int[] capacityPerMachine) {
+        this.capacityPerMachine = capacityPerMachine;
+        return this;
+    }
+
+    public PriceReplay setNumInstancesPerType(int[] numInstancesPerType) {
+        this.numInstancesPerType = numInstancesPerType;
+        return this;
+    }
+
+    /**
+     * Every window starts with a plan from scratch, so fewer windows are closer to a continuous run.
+     */
+    public PriceReplay setNumWindows(int numWindows) {
+        this.numWindows = numWindows;
+        return this;
+    }
+
+    public PriceReplay setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Only sound with solvers that return optimal solutions (see OptimizationSolver.calcPriceRanges).
+     */
+    public PriceReplay setUsePriceRanges(boolean usePriceRanges) {
+        this.usePriceRanges = usePriceRanges;
+        return this;
+    }
+
+    public ReplayResult replay() throws Exception {
+        return replay(priceHistory.getFirstTimestamp(), priceHistory.getLastTimestamp());
+    }
+
+    /**
+     * Replays [fromTimestamp, toTimestamp), starting no sooner than the first moment every instance type has a price.
+     */
+    public ReplayResult replay(long fromTimestamp, long toTimestamp) throws Exception {
+
+        long from = Math.max(fromTimestamp, priceHistory.getFirstTimestamp());
+
+        if(from >= toTimestamp) {
+            return new ReplayResult(from, toTimestamp);
+        }
+
+        long windowLength = (toTimestamp - from + numWindows - 1) / numWindows;
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, numWindows)));
+
+        try {
+
+            List<Future<ReplayResult>> windows = new ArrayList<>();
+
+            for (long windowStart = from; windowStart < toTimestamp; windowStart += windowLength) {
+
+                long start = windowStart;
+                long end = Math.min(toTimestamp, windowStart + windowLength);
+
+                windows.add(executor.submit(() -> replayWindow(start, end)));
+            }
+
+            ReplayResult result = null;
+
+            for (Future<ReplayResult> window : windows) {
+                result = result == null ? window.get() : result.merge(window.get());
+            }
+
+            return result;
+
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int[] getMaxPrices() {
+
+        int[] result = new int[priceHistory.getNumInstanceTypes()];
+
+        for (int t = 0; t < result.length; t++) {
+            result[t] = priceHistory.getSeries(t).getMaxPrice();
+        }
+
+        return result;
+    }
+
+    /**
+     * Timed apart from the re-plan, as the latency of a re-plan does not include the analysis done after it.
+     */
+    private PriceRanges calcPriceRanges(OptimizationSolver solver, int[] maxPrices, ReplayResult result) throws Exception {
+
+        if(!usePriceRanges) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+
+        PriceRanges priceRanges = solver.calcPriceRanges(maxPrices);
+
+        result.addPriceRangeAnalysis(System.nanoTime() - start);
+
+        return priceRanges;
+    }
+
+    private ReplayResult replayWindow(long fromTimestamp, long toTimestamp) throws Exception {
+
+        ReplayResult result = new ReplayResult(fromTimestamp, toTimestamp);
+
+        OptimizationSolver solver = solverFactory.get();
+
+        try {
+
+            int[] prices = priceHistory.getPricesAt(fromTimestamp);
+
+            solver.setPartitionSize(partitionSize)
+                    .setCapacityPerMachine(capacityPerMachine)
+                    .setNumInstancesPerType(numInstancesPerType)
+                    .setCostPerInstanceType(prices);
+
+            int[] maxPrices = getMaxPrices();
+
+            long start = System.nanoTime();
+            solver.solve();
+            result.addReplan(System.nanoTime() - start);
+
+            PriceRanges priceRanges = calcPriceRanges(solver, maxPrices, result);
+
+            long planTimestamp = fromTimestamp;
+            long planCost = solver.getSolution().getCost();
+
+            for (long timestamp : priceHistory.getChangeTimestamps(fromTimestamp, toTimestamp)) {
+
+                result.addCost(planCost, timestamp - planTimestamp);
+
+                priceHistory.getPricesAt(timestamp, prices);
+
+                planTimestamp = timestamp;
+
+                if(priceRanges != null && priceRanges.contains(prices)) {
+                    result.addSkippedReplan();
+                    planCost = priceRanges.getCost(prices);
+                    continue;
+                }
+
+                start = System.nanoTime();
+                solver.updateCostPerInstanceType(prices);
+                result.addReplan(System.nanoTime() - start);
+
+                priceRanges = calcPriceRanges(solver, maxPrices, result);
+
+                planCost = solver.getSolution().getCost();
+            }
+
+            result.addCost(planCost, toTimestamp - planTimestamp);
+
+        } finally {
+            solver.end();
+        }
+
+        return result;
+    }
+}
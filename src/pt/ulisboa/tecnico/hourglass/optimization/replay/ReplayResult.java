@@ -0,0 +1,132 @@
+package pt.ulisboa.tecnico.hourglass.optimization.replay;
+
+import pt.ulisboa.tecnico.hourglass.optimization.util.DataPoint;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Cost and re-planning statistics of replaying a period of the price history.
+ */
+public class ReplayResult {
+
+    private static final double MILLIS_PER_HOUR = 3600 * 1000;
+
+    private final long fromTimestamp;
+
+    private final long toTimestamp;
+
+    /* in the currency of the price history, e.g. dollars */
+    private double totalCost;
+
+    private int numReplans;
+
+    /* price changes that did not need a new plan */
+    private int numSkippedReplans;
+
+    private long totalSolveNanos;
+
+    private long maxSolveNanos;
+
+    private int numPriceRangeAnalyses;
+
+    private long totalPriceRangeNanos;
+
+    private long maxPriceRangeNanos;
+
+    public ReplayResult(long fromTimestamp, long toTimestamp) {
+        this.fromTimestamp = fromTimestamp;
+        this.toTimestamp = toTimestamp;
+    }
+
+    /**
+     * @param costPerHour deployment cost per hour in fixed point (see {@link DataPoint#PRICE_SCALE})
+     */
+    void addCost(long costPerHour, long millis) {
+        totalCost += costPerHour * (millis / MILLIS_PER_HOUR) / DataPoint.PRICE_SCALE;
+    }
+
+    void addReplan(long solveNanos) {
+        numReplans++;
+        totalSolveNanos += solveNanos;
+        maxSolveNanos = Math.max(maxSolveNanos, solveNanos);
+    }
+
+    void addSkippedReplan() {
+        numSkippedReplans++;
+    }
+
+    void addPriceRangeAnalysis(long nanos) {
+        numPriceRangeAnalyses++;
+        totalPriceRangeNanos += nanos;
+        maxPriceRangeNanos = Math.max(maxPriceRangeNanos, nanos);
+    }
+
+    /**
+     * @return the result of this period followed by the next one
+     */
+    ReplayResult merge(ReplayResult next) {
+
+        ReplayResult result = new ReplayResult(fromTimestamp, next.toTimestamp);
+
+        result.totalCost = totalCost + next.totalCost;
+        result.numReplans = numReplans + next.numReplans;
+        result.numSkippedReplans = numSkippedReplans + next.numSkippedReplans;
+        result.totalSolveNanos = totalSolveNanos + next.totalSolveNanos;
+        result.maxSolveNanos = Math.max(maxSolveNanos, next.maxSolveNanos);
+        result.numPriceRangeAnalyses = numPriceRangeAnalyses + next.numPriceRangeAnalyses;
+        result.totalPriceRangeNanos = totalPriceRangeNanos + next.totalPriceRangeNanos;
+        result.maxPriceRangeNanos = Math.max(maxPriceRangeNanos, next.maxPriceRangeNanos);
+
+        return result;
+    }
+
+    public long getFromTimestamp() {
+        return fromTimestamp;
+    }
+
+    public long getToTimestamp() {
+        return toTimestamp;
+    }
+
+    public double getTotalCost() {
+        return totalCost;
+    }
+
+    public int getNumReplans() {
+        return numReplans;
+    }
+
+    public int getNumSkippedReplans() {
+        return numSkippedReplans;
+    }
+
+    public double getAverageSolveMillis() {
+        return numReplans == 0 ? 0 : totalSolveNanos / 1e6 / numReplans;
+    }
+
+    public double getMaxSolveMillis() {
+        return maxSolveNanos / 1e6;
+    }
+
+    /**
+     * @return the mean time of the price range analysis run after every re-plan, not included in the solve times
+     */
+    public double getAveragePriceRangeMillis() {
+        return numPriceRangeAnalyses == 0 ? 0 : totalPriceRangeNanos / 1e6 / numPriceRangeAnalyses;
+    }
+
+    public double getMaxPriceRangeMillis() {
+        return maxPriceRangeNanos / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return "[INFO] REPLAY COST: " + String.format("%.4f", totalCost)
+                + " REPLANS: " + numReplans
+                + " SKIPPED: " + numSkippedReplans
+                + " AVG SOLVE: " + String.format("%.3f", getAverageSolveMillis()) + " MILLIS"
+                + " MAX SOLVE: " + String.format("%.3f", getMaxSolveMillis()) + " MILLIS"
+                + " AVG PRICE RANGES: " + String.format("%.3f", getAveragePriceRangeMillis()) + " MILLIS"
+                + " MAX PRICE RANGES: " + String.format("%.3f", getMaxPriceRangeMillis()) + " MILLIS";
+    }
+}
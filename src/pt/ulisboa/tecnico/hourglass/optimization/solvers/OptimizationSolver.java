@@ -1,6 +1,22 @@
 package pt.ulisboa.tecnico.hourglass.optimization.solvers;
 
-import pt.ulisboa.tecnico.hourglass.optimization.solvers.cplex.OptimizationSolverCPLEX;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.metrics.SolverMetricsListener;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.portfolio.SolutionListener;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.util.PriceRanges;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.util.Solution;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.util.SolutionCache;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 /**
  * Created by Pedro Joaquim.
@@ -11,11 +27,21 @@ public abstract class OptimizationSolver {
     protected static final int HIGH_HEAT_CAPACITY = 4;
     protected static final int LOW_HEAT_CAPACITY = 1;
 
+    /* re-solves allowed per price breakpoint before giving up on widening the range */
+    private static final int MAX_BREAKPOINT_PROBES = 32;
+
 
     public static final int NONE = 0;
     public static final int INFO = 1;
     public static final int DEBUG = 2;
 
+    public static final String MODEL_BUILD_PHASE = "model-build";
+    public static final String SOLVE_PHASE = "solve";
+    public static final String EXTRACTION_PHASE = "extraction";
+
+    /* null when the JVM cannot measure the bytes allocated per thread */
+    private static final com.sun.management.ThreadMXBean ALLOCATION_MX_BEAN = getAllocationMXBean();
+
 
     private int verbosityLevel;
 
@@ -27,6 +53,41 @@ public abstract class OptimizationSolver {
 
     protected int[] numInstancesPerType;
 
+    protected Solution solution;
+
+    /* set by the solvers when the solution of the last solve is proved optimal, e.g. not cut short by a limit */
+    protected boolean solutionOptimal;
+
+    /* machine each partition is currently on (Solution.UNASSIGNED for new partitions), null when not reconfiguring */
+    protected int[] currentAssignment;
+
+    protected int[] migrationCostPerPartition;
+
+    private SolutionCache solutionCache;
+
+    /* in seconds, 0 for no limit */
+    protected double timeLimit;
+
+    private volatile boolean cancelled;
+
+    /* previous solution used as the starting point of a re-solve, null when solving from scratch */
+    protected Solution startSolution;
+
+    /* nanos spent in each phase of the last solve, in the order the phases ran */
+    private final Map<String, Long> phaseTimes = new LinkedHashMap<>();
+
+    /* nanos spent in the parts of a phase, kept apart so that the phase times add up to the whole solve */
+    private final Map<String, Long> subPhaseTimes = new LinkedHashMap<>();
+
+    private long solveStartNanos;
+
+    /* solves neither print their solution nor report to the listeners */
+    private boolean quiet;
+
+    private SolverMetricsListener metricsListener;
+
+    private SolutionListener incumbentListener;
+
     public OptimizationSolver setPartitionSize(int[] partitionSize) {
         this.partitionSize = partitionSize;
         return this;
@@ -47,11 +108,231 @@ public abstract class OptimizationSolver {
         return this;
     }
 
+    /**
+     * Sets the cost of every machine from the cost of its instance type, the number of instances per type being
+     * already set.
+     */
+    public OptimizationSolver setCostPerInstanceType(int[] costPerInstanceType) {
+        this.costPerMachine = toCostPerMachine(costPerInstanceType);
+        return this;
+    }
+
+    /**
+     * Solvers that support it return the best solution found when the limit is reached.
+     */
+    public OptimizationSolver setTimeLimit(double seconds) {
+        this.timeLimit = seconds;
+        return this;
+    }
+
+    /**
+     * Asks a running solve to stop as soon as possible, returning the best solution found so far when the solver
+     * supports it. A solve that has not started yet stops right away. Cleared when the solve ends.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    protected boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Drops a cancel that no solve consumed, e.g. before handing the solver to another thread to solve.
+     */
+    public void clearCancelled() {
+        this.cancelled = false;
+    }
+
+    /**
+     * Solutions are looked up in the cache before solving and stored in it afterwards, only when proved optimal so
+     * that a solution cut short by a time limit or a cancel is never served for a later solve. The cache is not used
+     * in reconfiguration mode, where the solution also depends on the current assignment.
+     */
+    public OptimizationSolver setSolutionCache(SolutionCache solutionCache) {
+        this.solutionCache = solutionCache;
+        return this;
+    }
+
+    /**
+     * Solves that neither print their solution nor report to the metrics and incumbent listeners, e.g. the probes
+     * of calcPriceRanges. The phase times are still recorded.
+     */
+    public OptimizationSolver setQuiet(boolean quiet) {
+        this.quiet = quiet;
+        return this;
+    }
+
+    protected boolean isQuiet() {
+        return quiet;
+    }
+
+    /**
+     * Reconfiguration mode: the cost of moving each partition away from its current machine, in the same unit as
+     * the machine costs, is added to the deployment cost. Solvers that do not support it ignore the current
+     * assignment.
+     */
+    public OptimizationSolver setCurrentAssignment(int[] currentAssignment, int[] migrationCostPerPartition) {
+        this.currentAssignment = currentAssignment;
+        this.migrationCostPerPartition = migrationCostPerPartition;
+        return this;
+    }
+
+    protected boolean isReconfiguring() {
+        return currentAssignment != null;
+    }
+
+    /**
+     * @return the current machine of a partition, or Solution.UNASSIGNED if it is new or its machine no longer exists
+     */
+    protected int getCurrentMachine(int partitionID) {
+
+        if(partitionID >= currentAssignment.length) return Solution.UNASSIGNED;
+
+        int machineID = currentAssignment[partitionID];
+
+        return machineID < costPerMachine.length ? machineID : Solution.UNASSIGNED;
+    }
+
+    /**
+     * The listener is called from the thread that solves, for the portfolio solver from the threads of its
+     * strategies too.
+     */
+    public OptimizationSolver setMetricsListener(SolverMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+        return this;
+    }
+
+    /**
+     * @return the metrics listener, null while quiet
+     */
+    protected SolverMetricsListener getMetricsListener() {
+        return quiet ? null : metricsListener;
+    }
+
+    /**
+     * Told about every solution the solver finds while solving, before the solve ends (e.g. the CPLEX incumbents),
+     * from the thread that solves.
+     */
+    public OptimizationSolver setIncumbentListener(SolutionListener incumbentListener) {
+        this.incumbentListener = incumbentListener;
+        return this;
+    }
+
+    public SolutionListener getIncumbentListener() {
+        return incumbentListener;
+    }
+
+    protected boolean hasIncumbentListener() {
+        return !quiet && incumbentListener != null;
+    }
+
+    /**
+     * Adds the time elapsed since startNanos (from System.nanoTime) to a phase of the current solve and reports it
+     * with the bytes allocated since startAllocatedBytes (from getAllocatedBytes).
+     */
+    protected void recordPhase(String phase, long startNanos, long startAllocatedBytes) {
+
+        long nanos = System.nanoTime() - startNanos;
+
+        phaseTimes.merge(phase, nanos, Long::sum);
+
+        if(getMetricsListener() != null) {
+            long allocatedBytes = startAllocatedBytes < 0 ? -1 : getAllocatedBytes() - startAllocatedBytes;
+            metricsListener.onPhase(this, phase, nanos, allocatedBytes);
+        }
+    }
+
+    /**
+     * Like recordPhase for a part of a phase that is recorded as a whole too.
+     */
+    protected void recordSubPhase(String phase, String subPhase, long startNanos, long startAllocatedBytes) {
+
+        long nanos = System.nanoTime() - startNanos;
+
+        subPhaseTimes.merge(subPhase, nanos, Long::sum);
+
+        if(getMetricsListener() != null) {
+            long allocatedBytes = startAllocatedBytes < 0 ? -1 : getAllocatedBytes() - startAllocatedBytes;
+            metricsListener.onSubPhase(this, phase, subPhase, nanos, allocatedBytes);
+        }
+    }
+
+    protected void clearPhaseTimes() {
+        phaseTimes.clear();
+        subPhaseTimes.clear();
+        this.solveStartNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the bytes allocated so far by the current thread, -1 without a metrics listener or when the JVM does
+     * not measure them
+     */
+    protected long getAllocatedBytes() {
+
+        if(getMetricsListener() == null || ALLOCATION_MX_BEAN == null) {
+            return -1;
+        }
+
+        return ALLOCATION_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    protected void recordModelSize(int numVariables, int numConstraints, long numNonZeros) {
+        if(getMetricsListener() != null) {
+            metricsListener.onModelSize(this, numVariables, numConstraints, numNonZeros);
+        }
+    }
+
+    /**
+     * @param bestBound best lower bound on the objective known to the solver, NaN when it does not compute one
+     * @param incumbent the solution, null when only the metrics listener wants it
+     */
+    protected void recordIncumbent(double objective, double bestBound, Solution incumbent) {
+
+        if(getMetricsListener() != null) {
+            metricsListener.onIncumbent(this, objective, bestBound, System.nanoTime() - solveStartNanos);
+        }
+
+        if(hasIncumbentListener() && incumbent != null) {
+            incumbentListener.onSolution(incumbent, this);
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean getAllocationMXBean() {
+
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        if(!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+
+        com.sun.management.ThreadMXBean result = (com.sun.management.ThreadMXBean) threadMXBean;
+
+        return result.isThreadAllocatedMemorySupported() && result.isThreadAllocatedMemoryEnabled() ? result : null;
+    }
+
+    /**
+     * @return the nanos spent in each phase of the last solve (e.g. MODEL_BUILD_PHASE), empty on a cache hit
+     */
+    public Map<String, Long> getPhaseTimes() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(phaseTimes));
+    }
+
+    /**
+     * @return the nanos spent in the parts of the phases of the last solve that are broken down (e.g. the CPLEX
+     * model build), already included in getPhaseTimes
+     */
+    public Map<String, Long> getSubPhaseTimes() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(subPhaseTimes));
+    }
+
     public void solve() throws Exception {
 
         int numMachines = costPerMachine.length;
         int numPartitions = partitionSize.length;
 
+        clearPhaseTimes();
+
         if(verbosityLevel == DEBUG ) {
             System.out.println("[INFO] CL MACHINES: 0 to " + (getFirstIndex(1) - 1));
             System.out.println("[INFO] CXL MACHINES: " + getFirstIndex(1) + " to " + (getFirstIndex(2) - 1));
@@ -64,12 +345,427 @@ public abstract class OptimizationSolver {
             }
         }
 
+        try {
+            solveOrLookUp(numPartitions, numMachines);
+        } finally {
+            clearCancelled();
+        }
+    }
+
+    private void solveOrLookUp(int numPartitions, int numMachines) throws Exception {
+
+        this.solutionOptimal = false;
+
+        if(solutionCache == null || isReconfiguring()) {
+            solve(numPartitions, numMachines);
+            return;
+        }
+
+        Solution cached = solutionCache.get(getClass(), partitionSize, costPerMachine, capacityPerMachine, numInstancesPerType);
+
+        if(cached != null) {
+
+            if(verbosityLevel >= INFO && !quiet) System.out.println("[INFO] SOLUTION CACHE HIT");
+
+            this.solution = cached;
+            this.solutionOptimal = true;
+
+            printSolution(solution);
+
+            return;
+        }
+
         solve(numPartitions, numMachines);
 
+        if(!solutionOptimal) return;
+
+        solutionCache.put(getClass(), partitionSize, costPerMachine, capacityPerMachine, numInstancesPerType, solution);
+    }
+
+    /**
+     * Solves again after the input changed slightly (e.g. partition sizes or number of partitions), starting from a
+     * previous solution. Partitions are matched by index, so partitions and machines that no longer exist are
+     * ignored and new partitions start unassigned. Solvers that cannot use a starting point solve from scratch.
+     */
+    public void resolve(Solution previous) throws Exception {
+
+        this.startSolution = previous;
+
+        try {
+            solve();
+        } finally {
+            this.startSolution = null;
+        }
+    }
+
+    /**
+     * Solves again with new machine costs (e.g. after a spot price change), the rest of the input being the same
+     * as in the last solve. Solvers that keep their model between solves only update its objective.
+     */
+    public void updateCosts(int[] costPerMachine) throws Exception {
+        setCostPerMachine(costPerMachine);
+        solve();
+    }
+
+    public void updateCostPerInstanceType(int[] costPerInstanceType) throws Exception {
+        updateCosts(toCostPerMachine(costPerInstanceType));
+    }
+
+    /**
+     * Parametric analysis of the last solution, whose costs must be uniform per instance type: for every type, the
+     * price interval, within [0, maxPricePerType], over which its configuration stays optimal. Each bound is found
+     * Eisner-Severance style by probing: the line of the cost of the configuration along the price of the type is
+     * intersected with the one of the best configuration found at the current probe until a probe finds nothing
+     * cheaper. Only exact for solvers that return optimal solutions. The probes are quiet, and the input, the
+     * solution and the phase times of the last solve are restored.
+     */
+    public PriceRanges calcPriceRanges(int[] maxPricePerType) throws Exception {
+
+        int[] basePrices = new int[NUM_INSTANCE_TYPES];
+
+        for (int t = 0; t < NUM_INSTANCE_TYPES; t++) {
+            basePrices[t] = getTypeCost(t);
+        }
+
+        int[] baseConfiguration = getNumMachinesUsedPerType(solution);
+
+        int[] minPrices = new int[NUM_INSTANCE_TYPES];
+        int[] maxPrices = new int[NUM_INSTANCE_TYPES];
+
+        Solution baseSolution = solution;
+        boolean baseSolutionOptimal = solutionOptimal;
+        int[] baseCostPerMachine = costPerMachine;
+        Map<String, Long> basePhaseTimes = new LinkedHashMap<>(phaseTimes);
+        Map<String, Long> baseSubPhaseTimes = new LinkedHashMap<>(subPhaseTimes);
+        long baseSolveStartNanos = solveStartNanos;
+
+        boolean baseQuiet = quiet;
+
+        setQuiet(true);
+
+        try {
+
+            for (int t = 0; t < NUM_INSTANCE_TYPES; t++) {
+
+                if(numInstancesPerType[t] == 0) {
+                    minPrices[t] = 0;
+                    maxPrices[t] = Integer.MAX_VALUE;
+                    continue;
+                }
+
+                //a more expensive type that is not used does not change anything
+                maxPrices[t] = baseConfiguration[t] == 0 ? Integer.MAX_VALUE : findPriceBreakpoint(t, basePrices, baseConfiguration, Math.max(maxPricePerType[t], basePrices[t]));
+                minPrices[t] = findPriceBreakpoint(t, basePrices, baseConfiguration, 0);
+            }
+
+        } finally {
+
+            setQuiet(baseQuiet);
+
+            this.costPerMachine = baseCostPerMachine;
+            this.solution = baseSolution;
+            this.solutionOptimal = baseSolutionOptimal;
+
+            clearPhaseTimes();
+            phaseTimes.putAll(basePhaseTimes);
+            subPhaseTimes.putAll(baseSubPhaseTimes);
+            this.solveStartNanos = baseSolveStartNanos;
+        }
+
+        return new PriceRanges(basePrices, baseConfiguration, minPrices, maxPrices);
+    }
+
+    /**
+     * @return the price closest to the bound, from the base price, at which the base configuration is still optimal
+     */
+    private int findPriceBreakpoint(int type, int[] basePrices, int[] baseConfiguration, int bound) throws Exception {
+
+        long baseOtherCost = getCostWithoutType(baseConfiguration, basePrices, type);
+
+        int[] prices = basePrices.clone();
+        int probePrice = bound;
+
+        for (int probe = 0; probePrice != basePrices[type]; probe++) {
+
+            //only the base price is known for sure to keep the base configuration optimal
+            if(probe == MAX_BREAKPOINT_PROBES) {
+                return basePrices[type];
+            }
+
+            prices[type] = probePrice;
+
+            updateCostPerInstanceType(prices);
+
+            int[] configuration = getNumMachinesUsedPerType(solution);
+            long otherCost = getCostWithoutType(configuration, basePrices, type);
+
+            if((long) configuration[type] * probePrice + otherCost >= (long) baseConfiguration[type] * probePrice + baseOtherCost) {
+                return probePrice;
+            }
+
+            //with the same number of machines of the type the lines never cross, the difference coming from a non
+            //exact solve (time limit, heuristic), so the base is taken as still optimal at the probe
+            if(configuration[type] == baseConfiguration[type]) {
+                return probePrice;
+            }
+
+            //the base configuration stops being optimal where both lines cross, strictly between the base and the
+            //probe when solutions are optimal (clamped otherwise, so the probes always get closer to the base)
+            double crossing = (double) (otherCost - baseOtherCost) / (baseConfiguration[type] - configuration[type]);
+
+            if(bound > basePrices[type]) {
+                probePrice = (int) Math.max(basePrices[type], Math.min(probePrice - 1, Math.floor(crossing)));
+            } else {
+                probePrice = (int) Math.min(basePrices[type], Math.max(probePrice + 1, Math.ceil(crossing)));
+            }
+        }
+
+        return probePrice;
+    }
+
+    private long getCostWithoutType(int[] configuration, int[] prices, int type) {
+
+        long result = 0;
+
+        for (int t = 0; t < NUM_INSTANCE_TYPES; t++) {
+            if(t != type) result += (long) configuration[t] * prices[t];
+        }
+
+        return result;
+    }
+
+    private int[] getNumMachinesUsedPerType(Solution solution) {
+
+        int[] result = new int[NUM_INSTANCE_TYPES];
+
+        for (int t = 0; t < NUM_INSTANCE_TYPES; t++) {
+            for (int m = getFirstIndex(t); m < getFirstIndex(t + 1); m++) {
+                if(solution.isMachineUsed(m)) result[t]++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Releases the resources kept between solves. The solver can still be used afterwards.
+     */
+    public void end() {
     }
 
     protected abstract void solve(int numPartitions, int numMachines) throws Exception;
 
+    /**
+     * Local repair after spot machines are revoked: only the partitions of the evicted machines are moved, by
+     * decreasing size, to the machine in use with the least spare capacity that holds them or, when none does, to
+     * the free instance with the lowest cost per usable capacity unit. Evicted machines are never selected again.
+     */
+    public Solution repair(Solution current, int[] evictedMachines) {
+
+        int numMachines = costPerMachine.length;
+        int numPartitions = partitionSize.length;
+
+        boolean[] evicted = toMachineSet(evictedMachines);
+        boolean[] machineUsage = new boolean[numMachines];
+        int[] partitionAssignment = current.getPartitionAssignment().clone();
+        int[] residualCapacity = new int[numMachines];
+
+        for (int m = 0; m < numMachines; m++) {
+            if(current.isMachineUsed(m) && !evicted[m]) {
+                machineUsage[m] = true;
+                residualCapacity[m] = capacityPerMachine[m];
+            }
+        }
+
+        List<Integer> displacedPartitions = new ArrayList<>();
+        long remainingDemand = 0;
+
+        for (int p = 0; p < numPartitions; p++) {
+
+            int m = partitionAssignment[p];
+
+            if(m == Solution.UNASSIGNED || evicted[m]) {
+                partitionAssignment[p] = Solution.UNASSIGNED;
+                displacedPartitions.add(p);
+                remainingDemand += partitionSize[p];
+            } else {
+                residualCapacity[m] -= partitionSize[p];
+            }
+        }
+
+        displacedPartitions.sort((p1, p2) -> Integer.compare(partitionSize[p2], partitionSize[p1]));
+
+        for (int p : displacedPartitions) {
+
+            int size = partitionSize[p];
+            int m = findBestFit(machineUsage, residualCapacity, size);
+
+            if(m == Solution.UNASSIGNED) {
+                m = findCheapestFreeMachine(machineUsage, evicted, size, remainingDemand);
+                machineUsage[m] = true;
+                residualCapacity[m] = capacityPerMachine[m];
+            }
+
+            partitionAssignment[p] = m;
+            residualCapacity[m] -= size;
+            remainingDemand -= size;
+        }
+
+        int cost = 0;
+
+        for (int m = 0; m < numMachines; m++) {
+            if(machineUsage[m]) cost += costPerMachine[m];
+        }
+
+        this.solution = new Solution(cost, machineUsage, partitionAssignment);
+
+        printSolution(solution);
+
+        return solution;
+    }
+
+    /**
+     * Full re-optimization after a repair, run in the background by another solver on the machines that were not
+     * evicted and starting from the repaired solution. The solution is given with the machine ids of this solver.
+     */
+    public CompletableFuture<Solution> reoptimize(Solution repaired, int[] evictedMachines, OptimizationSolver solver, Executor executor) {
+
+        boolean[] evicted = toMachineSet(evictedMachines);
+
+        int[] machineIDs = new int[costPerMachine.length];
+        int[] reducedIDs = new int[costPerMachine.length];
+        int[] reducedInstancesPerType = new int[NUM_INSTANCE_TYPES];
+        int numReducedMachines = 0;
+
+        for (int t = 0; t < NUM_INSTANCE_TYPES; t++) {
+
+            int firstIndex = getFirstIndex(t);
+
+            for (int m = firstIndex; m < firstIndex + numInstancesPerType[t]; m++) {
+
+                reducedIDs[m] = evicted[m] ? Solution.UNASSIGNED : numReducedMachines;
+
+                if(evicted[m]) continue;
+
+                machineIDs[numReducedMachines++] = m;
+                reducedInstancesPerType[t]++;
+            }
+        }
+
+        int[] reducedCost = new int[numReducedMachines];
+        int[] reducedCapacity = new int[numReducedMachines];
+        boolean[] reducedUsage = new boolean[numReducedMachines];
+
+        for (int i = 0; i < numReducedMachines; i++) {
+            reducedCost[i] = costPerMachine[machineIDs[i]];
+            reducedCapacity[i] = capacityPerMachine[machineIDs[i]];
+            reducedUsage[i] = repaired.isMachineUsed(machineIDs[i]);
+        }
+
+        int[] reducedAssignment = new int[partitionSize.length];
+
+        for (int p = 0; p < reducedAssignment.length; p++) {
+            int m = repaired.getAssignedMachine(p);
+            reducedAssignment[p] = m == Solution.UNASSIGNED ? m : reducedIDs[m];
+        }
+
+        Solution start = new Solution(repaired.getCost(), reducedUsage, reducedAssignment);
+
+        solver.setPartitionSize(partitionSize.clone())
+                .setCostPerMachine(reducedCost)
+                .setCapacityPerMachine(reducedCapacity)
+                .setNumInstancesPerType(reducedInstancesPerType);
+
+        return CompletableFuture.supplyAsync(() -> {
+
+            try {
+                solver.resolve(start);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                solver.end();
+            }
+
+            return toMachineIDs(solver.getSolution(), machineIDs);
+        }, executor);
+    }
+
+    private Solution toMachineIDs(Solution reduced, int[] machineIDs) {
+
+        boolean[] machineUsage = new boolean[costPerMachine.length];
+        int[] partitionAssignment = reduced.getPartitionAssignment().clone();
+
+        for (int i = 0; i < reduced.getMachineUsage().length; i++) {
+            machineUsage[machineIDs[i]] = reduced.isMachineUsed(i);
+        }
+
+        for (int p = 0; p < partitionAssignment.length; p++) {
+            if(partitionAssignment[p] != Solution.UNASSIGNED) partitionAssignment[p] = machineIDs[partitionAssignment[p]];
+        }
+
+        return new Solution(reduced.getCost(), machineUsage, partitionAssignment);
+    }
+
+    private boolean[] toMachineSet(int[] machineIDs) {
+
+        boolean[] result = new boolean[costPerMachine.length];
+
+        for (int m : machineIDs) {
+            result[m] = true;
+        }
+
+        return result;
+    }
+
+    private int findBestFit(boolean[] machineUsage, int[] residualCapacity, int size) {
+
+        int result = Solution.UNASSIGNED;
+
+        for (int m = 0; m < machineUsage.length; m++) {
+            if(machineUsage[m] && residualCapacity[m] >= size && (result == Solution.UNASSIGNED || residualCapacity[m] < residualCapacity[result])) {
+                result = m;
+            }
+        }
+
+        return result;
+    }
+
+    private int findCheapestFreeMachine(boolean[] machineUsage, boolean[] evicted, int size, long remainingDemand) {
+
+        int result = Solution.UNASSIGNED;
+        double bestCostPerUnit = Double.MAX_VALUE;
+
+        for (int m = 0; m < machineUsage.length; m++) {
+
+            if(machineUsage[m] || evicted[m] || capacityPerMachine[m] < size) continue;
+
+            //at least one unit, for zero size partitions
+            double costPerUnit = (double) costPerMachine[m] / Math.max(1, Math.min(capacityPerMachine[m], remainingDemand));
+
+            if(costPerUnit < bestCostPerUnit) {
+                bestCostPerUnit = costPerUnit;
+                result = m;
+            }
+        }
+
+        if(result == Solution.UNASSIGNED) {
+            throw new IllegalStateException("NO MACHINE AVAILABLE FOR PARTITION OF SIZE " + size);
+        }
+
+        return result;
+    }
+
+
+    private int[] toCostPerMachine(int[] costPerInstanceType) {
+
+        int[] result = new int[getFirstIndex(NUM_INSTANCE_TYPES)];
+
+        for (int t = 0; t < NUM_INSTANCE_TYPES; t++) {
+            Arrays.fill(result, getFirstIndex(t), getFirstIndex(t + 1), costPerInstanceType[t]);
+        }
+
+        return result;
+    }
 
     protected int getFirstIndex(int machineTypeIndex) {
 
@@ -82,7 +778,60 @@ public abstract class OptimizationSolver {
         return result;
     }
 
+    protected int getTypeCapacity(int machineTypeIndex) {
+        return numInstancesPerType[machineTypeIndex] == 0 ? 0 : capacityPerMachine[getFirstIndex(machineTypeIndex)];
+    }
+
+    protected int getTypeCost(int machineTypeIndex) {
+        return numInstancesPerType[machineTypeIndex] == 0 ? 0 : costPerMachine[getFirstIndex(machineTypeIndex)];
+    }
+
+    protected void printSolution(Solution solution) {
+
+        if(quiet) return;
+
+        if(getVerbosityLevel() >= INFO) {
+
+            System.out.println("**********************SOLUTION***********************");
+
+            for (int i = 0; i < costPerMachine.length; i++) {
+                if (solution.isMachineUsed(i)) {
+                    System.out.println("MACHINE " + i + " CAPACITY = " + capacityPerMachine[i] + " COST: " + costPerMachine[i]);
+                }
+            }
+
+            for (int i = 0; i < partitionSize.length; i++) {
+                System.out.println("PARTITION  " + i + " ASSIGNED TO : " + solution.getAssignedMachine(i));
+            }
+        }
+
+        System.out.println("[INFO] COST: " + solution.getCost());
+
+        if(isReconfiguring()) {
+
+            int numMigrations = 0;
+
+            for (int i = 0; i < partitionSize.length; i++) {
+                int currentMachine = getCurrentMachine(i);
+                if(currentMachine != Solution.UNASSIGNED && currentMachine != solution.getAssignedMachine(i)) numMigrations++;
+            }
+
+            System.out.println("[INFO] MIGRATIONS: " + numMigrations);
+        }
+    }
+
     public int getVerbosityLevel() {
         return verbosityLevel;
     }
+
+    /**
+     * @return true if the solver proved the solution of the last solve optimal
+     */
+    public boolean isSolutionOptimal() {
+        return solutionOptimal;
+    }
+
+    public Solution getSolution() {
+        return solution;
+    }
 }
@@ -4,6 +4,7 @@ import ilog.concert.*;
 import ilog.cplex.IloCplex;
 import pt.ulisboa.tecnico.hourglass.optimization.solvers.OptimizationSolver;
 import pt.ulisboa.tecnico.hourglass.optimization.solvers.util.Machine;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.util.Solution;
 
 
 import java.util.ArrayList;
@@ -11,117 +12,461 @@ import java.util.Arrays;
 import java.util.List;
 /**
  * Created by Pedro Joaquim.
+ *
+ * The model is kept after solving, so that a change of machine costs only updates the objective before solving
+ * again. It is released by {@link #end()} or when a new model is built.
  */
 
 public class OptimizationSolverCPLEX extends OptimizationSolver {
 
+    /* sub-phases of MODEL_BUILD_PHASE */
+    public static final String RESTRICTIONS_SUB_PHASE = "restrictions";
+    public static final String VARIABLES_SUB_PHASE = "variables";
+    public static final String SYMMETRY_SUB_PHASE = "symmetry";
+    public static final String CONSTRAINTS_SUB_PHASE = "constraints";
+    public static final String OBJECTIVE_SUB_PHASE = "objective";
+
     private IloCplex cplex;
 
-    private List<int[]> zeroVars;
+    private int[][] allowedPartitionsPerMachine;
+
+    private IloIntVar[] machineUsageVars;
+
+    private IloIntVar[][] assignmentVarsPerMachine;
+
+    private IloObjective objective;
 
-    public OptimizationSolverCPLEX() {
-        this.zeroVars = new ArrayList<>();
+    /* copy of the inputs other than the costs the live model was built from */
+    private int[][] modelInputs;
+
+    /* CPLEX MIP emphasis, -1 for the default */
+    private int mipEmphasis = -1;
+
+    /**
+     * e.g. 1 to emphasize feasibility over optimality when solving under a time limit.
+     */
+    public OptimizationSolverCPLEX setMIPEmphasis(int mipEmphasis) {
+        this.mipEmphasis = mipEmphasis;
+        return this;
     }
 
     public void solve(int numPartitions, int numMachines) throws IloException {
 
+        buildModel(numPartitions, numMachines);
+
+        solveModel();
+    }
+
+    /**
+     * Builds the model of the current input without solving it, e.g. to measure the construction on its own. The
+     * phase times then only hold the model build.
+     */
+    public void buildModel() throws IloException {
+
+        clearPhaseTimes();
+
+        buildModel(partitionSize.length, costPerMachine.length);
+    }
+
+    private void buildModel(int numPartitions, int numMachines) throws IloException {
+
+        long start = System.nanoTime();
+
+        long allocated = getAllocatedBytes();
+
+        buildModelParts(numPartitions, numMachines);
+
+        recordPhase(MODEL_BUILD_PHASE, start, allocated);
+    }
+
+    private void buildModelParts(int numPartitions, int numMachines) throws IloException {
+
+        end();
+
         this.cplex = new IloCplex();
 
+        long start = System.nanoTime();
+        long allocated = getAllocatedBytes();
+
+        if(isReconfiguring()) {
+            //the symmetry restrictions only hold when planning from scratch, a partition may stay where it is or
+            //move to any other machine
+            this.allowedPartitionsPerMachine = calcAllPartitionsPerMachine(numPartitions, numMachines);
+        } else {
+            this.allowedPartitionsPerMachine = calcAllowedPartitionsPerMachine(numPartitions, numMachines);
+        }
 
-        IloIntVar[][] assignmentMatrixPerPartition = new IloIntVar[numPartitions][];
-        IloIntVar[][] assignmentMatrixPerMachine = new IloIntVar[numMachines][numPartitions];
+        recordSubPhase(MODEL_BUILD_PHASE, RESTRICTIONS_SUB_PHASE, start, allocated);
 
-        IloIntVar[] machineUsageVars = cplex.boolVarArray(numMachines);
+        start = System.nanoTime();
+        allocated = getAllocatedBytes();
 
-        for (int p = 0; p < numPartitions; p++) {
+        this.machineUsageVars = cplex.boolVarArray(numMachines);
 
-            assignmentMatrixPerPartition[p] = cplex.boolVarArray(numMachines);
+        //only the (machine, partition) pairs allowed by the hot/cold restrictions, if any, get an assignment variable
+        this.assignmentVarsPerMachine = createAssignmentVars(numMachines);
+        IloIntVar[][] assignmentVarsPerPartition = groupAssignmentVarsPerPartition(assignmentVarsPerMachine, numPartitions);
 
-            for (int m = 0; m < numMachines; m++) {
-                assignmentMatrixPerMachine[m][p] = assignmentMatrixPerPartition[p][m];
-            }
+        List<List<Machine<IloIntVar>>> machinesPerType = createMachineTypeList(assignmentVarsPerMachine);
+
+        recordSubPhase(MODEL_BUILD_PHASE, VARIABLES_SUB_PHASE, start, allocated);
+
+        start = System.nanoTime();
+        allocated = getAllocatedBytes();
+
+        if(!isReconfiguring()) {
+            addSimilarMachineConstraint(cplex, machinesPerType, numPartitions);
         }
 
-        List<List<Machine<IloIntVar>>> assignmentVarsPerMachine = createMachineTypeList(assignmentMatrixPerMachine);
-        addHotColdMachineRestrictions(cplex, assignmentVarsPerMachine, numPartitions);
-        addSimilarMachineConstraint(cplex, assignmentVarsPerMachine, numPartitions);
+        recordSubPhase(MODEL_BUILD_PHASE, SYMMETRY_SUB_PHASE, start, allocated);
+
+        start = System.nanoTime();
+        allocated = getAllocatedBytes();
 
         for (int p = 0; p < numPartitions; p++) {
             //constraint 2: every partition has to be assigned to one and only one machine
 
-            cplex.addEq(cplex.sum(assignmentMatrixPerPartition[p]), 1);
-
-            /*for (int m = 0; m < numMachines; m++) {
-                //constraint 1 : if a partition is assigned to one machine then this machine has to be selected
-
-                cplex.addLe(cplex.sum(assignmentMatrixPerPartition[p][m], cplex.negative(machineUsageVars[m])), 0);
-            }*/
+            cplex.addEq(cplex.sum(assignmentVarsPerPartition[p]), 1);
         }
 
         //constraint 3: a machine can only be assigned a set of partitions that do not outburst its capacity
         for (int m = 0; m < numMachines; m++) {
-            cplex.add(cplex.or(cplex.le(cplex.sum(assignmentMatrixPerMachine[m]), 0.1), cplex.eq(machineUsageVars[m], 1)));
 
-            cplex.addLe(cplex.scalProd(assignmentMatrixPerMachine[m], partitionSize), capacityPerMachine[m]);
+            IloIntVar[] machineVars = assignmentVarsPerMachine[m];
+
+            if(machineVars.length == 0) continue;
+
+            cplex.add(cplex.or(cplex.le(cplex.sum(machineVars), 0.1), cplex.eq(machineUsageVars[m], 1)));
+
+            cplex.addLe(cplex.scalProd(machineVars, getAllowedPartitionsSize(m)), capacityPerMachine[m]);
         }
 
+        recordSubPhase(MODEL_BUILD_PHASE, CONSTRAINTS_SUB_PHASE, start, allocated);
+
+        start = System.nanoTime();
+        allocated = getAllocatedBytes();
 
         //DEPLOYMENT COST MINIMIZATION
-        cplex.addMinimize(cplex.scalProd(machineUsageVars, costPerMachine));
+        IloLinearIntExpr objectiveExpr = cplex.scalProd(machineUsageVars, costPerMachine);
+
+        if(isReconfiguring()) {
+            addMigrationCost(objectiveExpr);
+        }
+
+        this.objective = cplex.addMinimize(objectiveExpr);
+
+        if(startSolution != null) {
+            addMIPStart(machineUsageVars, assignmentVarsPerMachine);
+        }
+
+        recordSubPhase(MODEL_BUILD_PHASE, OBJECTIVE_SUB_PHASE, start, allocated);
+
+        if(getMetricsListener() != null) {
+            recordModelSize(cplex.getNcols(), cplex.getNrows(), cplex.getNNZs());
+        }
 
         cplex.setOut(null);
 
+        if(mipEmphasis >= 0) {
+            cplex.setParam(IloCplex.Param.Emphasis.MIP, mipEmphasis);
+        }
+
+        cplex.use(new ProgressCallback());
+
+        this.modelInputs = getModelInputs();
+    }
+
+    /**
+     * Only the objective coefficients of the machine usage variables are changed when the model of the last solve
+     * is still alive, CPLEX starting from the previous incumbent.
+     */
+    @Override
+    public void updateCosts(int[] costPerMachine) throws Exception {
+
+        //a cache hit or new input since the model was built leaves it describing another instance
+        if(cplex == null || costPerMachine.length != machineUsageVars.length || !Arrays.deepEquals(modelInputs, getModelInputs())) {
+            super.updateCosts(costPerMachine);
+            return;
+        }
+
+        setCostPerMachine(costPerMachine);
+
+        clearPhaseTimes();
+
+        long start = System.nanoTime();
+
+        long allocated = getAllocatedBytes();
+
+        double[] coefs = new double[costPerMachine.length];
+
+        for (int m = 0; m < coefs.length; m++) {
+            coefs[m] = costPerMachine[m];
+        }
+
+        cplex.setLinearCoefs(objective, machineUsageVars, coefs);
+
+        recordPhase(MODEL_BUILD_PHASE, start, allocated);
+
+        try {
+            solveModel();
+        } finally {
+            clearCancelled();
+        }
+    }
+
+    @Override
+    public void end() {
+
+        if(cplex == null) return;
+
+        cplex.end();
+
+        this.cplex = null;
+        this.machineUsageVars = null;
+        this.assignmentVarsPerMachine = null;
+        this.objective = null;
+        this.modelInputs = null;
+    }
+
+    private int[][] getModelInputs() {
+        return new int[][]{partitionSize.clone(), capacityPerMachine.clone(), numInstancesPerType.clone(),
+                currentAssignment == null ? null : currentAssignment.clone(),
+                migrationCostPerPartition == null ? null : migrationCostPerPartition.clone()};
+    }
+
+    private void solveModel() throws IloException {
+
+        cplex.setParam(IloCplex.Param.TimeLimit, timeLimit > 0 ? timeLimit : 1e75);
+
+        long start = System.nanoTime();
+
+        long allocated = getAllocatedBytes();
+
         cplex.solve();
 
-        if(getVerbosityLevel() >= INFO) {
+        this.solutionOptimal = cplex.getStatus() == IloCplex.Status.Optimal;
 
+        recordPhase(SOLVE_PHASE, start, allocated);
 
-            System.out.println("**********************SOLUTION***********************");
+        start = System.nanoTime();
 
-            int cost = 0;
+        allocated = getAllocatedBytes();
 
-            for (int i = 0; i < numMachines; i++) {
+        this.solution = readSolution();
 
-                if (cplex.getValue(machineUsageVars[i]) == 1) {
-                    cost += costPerMachine[i];
-                    System.out.println("MACHINE " + i + " CAPACITY = " + capacityPerMachine[i] + " COST: " + costPerMachine[i]);
-                }
+        recordPhase(EXTRACTION_PHASE, start, allocated);
+
+        printSolution(solution);
+    }
+
+    /**
+     * Reads the solution of the last solve back from the model, which has to be still alive.
+     */
+    public Solution readSolution() throws IloException {
+        return extractSolution(cplex::getValues);
+    }
+
+    /**
+     * Migration cost of the partitions that leave their current machine: sum of cost * (1 - x[p][current machine]).
+     */
+    private void addMigrationCost(IloLinearIntExpr objectiveExpr) throws IloException {
+
+        int totalMigrationCost = 0;
+
+        for (int m = 0; m < assignmentVarsPerMachine.length; m++) {
+            for (int k = 0; k < assignmentVarsPerMachine[m].length; k++) {
+
+                int p = allowedPartitionsPerMachine[m][k];
+
+                if(getCurrentMachine(p) != m) continue;
+
+                totalMigrationCost += migrationCostPerPartition[p];
+                objectiveExpr.addTerm(-migrationCostPerPartition[p], assignmentVarsPerMachine[m][k]);
+            }
+        }
+
+        objectiveExpr.setConstant(totalMigrationCost);
+    }
+
+    /**
+     * Aborts the solve once cancelled and reports every improvement of the incumbent to the metrics and incumbent
+     * listeners, the incumbent assignment only being read for the latter.
+     */
+    private class ProgressCallback extends IloCplex.MIPInfoCallback {
+
+        private double lastIncumbent = Double.POSITIVE_INFINITY;
+
+        @Override
+        protected void main() throws IloException {
+
+            if(isCancelled()) {
+                abort();
+                return;
             }
 
+            if((getMetricsListener() != null || hasIncumbentListener()) && hasIncumbent()) {
 
-            for (int i = 0; i < numPartitions; i++) {
+                double incumbent = getIncumbentObjValue();
 
-                IloIntVar[] perPartitionAssignment = assignmentMatrixPerPartition[i];
+                if(incumbent < lastIncumbent) {
 
-                for (int j = 0; j < numMachines; j++) {
-                    if (cplex.getValue(perPartitionAssignment[j]) == 1) {
-                        System.out.println("PARTITION  " + i + " ASSIGNED TO : " + j);
-                    }
+                    lastIncumbent = incumbent;
+
+                    Solution solution = hasIncumbentListener() ? extractSolution(this::getIncumbentValues) : null;
+
+                    recordIncumbent(incumbent, getBestObjValue(), solution);
                 }
+            }
+        }
+    }
 
+    private IloIntVar[][] createAssignmentVars(int numMachines) throws IloException {
+
+        int numVars = 0;
+
+        for (int[] allowedPartitions : allowedPartitionsPerMachine) {
+            numVars += allowedPartitions.length;
+        }
+
+        IloIntVar[] allVars = cplex.boolVarArray(numVars);
+
+        IloIntVar[][] result = new IloIntVar[numMachines][];
+
+        int offset = 0;
+
+        for (int m = 0; m < numMachines; m++) {
+            result[m] = Arrays.copyOfRange(allVars, offset, offset + allowedPartitionsPerMachine[m].length);
+            offset += allowedPartitionsPerMachine[m].length;
+        }
+
+        return result;
+    }
+
+    private IloIntVar[][] groupAssignmentVarsPerPartition(IloIntVar[][] assignmentVarsPerMachine, int numPartitions) {
+
+        int[] numVarsPerPartition = new int[numPartitions];
+
+        for (int[] allowedPartitions : allowedPartitionsPerMachine) {
+            for (int p : allowedPartitions) {
+                numVarsPerPartition[p]++;
             }
+        }
+
+        IloIntVar[][] result = new IloIntVar[numPartitions][];
 
-            System.out.println("[INFO] COST: " + cost);
+        for (int p = 0; p < numPartitions; p++) {
+            result[p] = new IloIntVar[numVarsPerPartition[p]];
         }
-        else {
-            int cost = 0;
 
-            for (int i = 0; i < numMachines; i++) {
-                if (cplex.getValue(machineUsageVars[i]) == 1) {
-                    cost += costPerMachine[i];
-                }
+        int[] nextIndex = new int[numPartitions];
+
+        for (int m = 0; m < assignmentVarsPerMachine.length; m++) {
+            for (int k = 0; k < assignmentVarsPerMachine[m].length; k++) {
+                int p = allowedPartitionsPerMachine[m][k];
+                result[p][nextIndex[p]++] = assignmentVarsPerMachine[m][k];
             }
+        }
+
+        return result;
+    }
+
+    /**
+     * Feeds the start solution as a partial incumbent: the usage of every machine and the assignment of the
+     * partitions whose previous machine is still allowed. CPLEX repairs it if the new input made it infeasible.
+     */
+    private void addMIPStart(IloIntVar[] machineUsageVars, IloIntVar[][] assignmentVarsPerMachine) throws IloException {
 
-            System.out.println("[INFO] COST: " + cost);
+        int numMachines = Math.min(machineUsageVars.length, startSolution.getMachineUsage().length);
+        int numPartitions = Math.min(partitionSize.length, startSolution.getPartitionAssignment().length);
 
+        boolean[] keptPartitions = new boolean[partitionSize.length];
 
+        for (int m = 0; m < assignmentVarsPerMachine.length; m++) {
+            for (int p : allowedPartitionsPerMachine[m]) {
+                if(p < numPartitions && startSolution.getAssignedMachine(p) == m) keptPartitions[p] = true;
+            }
         }
 
-        cplex.getStatus();
+        List<IloIntVar> vars = new ArrayList<>();
+        List<Double> values = new ArrayList<>();
 
-        cplex.end();
+        for (int m = 0; m < numMachines; m++) {
+            vars.add(machineUsageVars[m]);
+            values.add(startSolution.isMachineUsed(m) ? 1.0 : 0.0);
+        }
+
+        for (int m = 0; m < assignmentVarsPerMachine.length; m++) {
+            for (int k = 0; k < assignmentVarsPerMachine[m].length; k++) {
+
+                int p = allowedPartitionsPerMachine[m][k];
+
+                if(!keptPartitions[p]) continue;
+
+                vars.add(assignmentVarsPerMachine[m][k]);
+                values.add(startSolution.getAssignedMachine(p) == m ? 1.0 : 0.0);
+            }
+        }
+
+        double[] startValues = new double[values.size()];
+
+        for (int i = 0; i < startValues.length; i++) {
+            startValues[i] = values.get(i);
+        }
+
+        cplex.addMIPStart(vars.toArray(new IloIntVar[vars.size()]), startValues, IloCplex.MIPStartEffort.Repair);
+    }
+
+    private int[] getAllowedPartitionsSize(int machineID) {
+
+        int[] allowedPartitions = allowedPartitionsPerMachine[machineID];
+        int[] result = new int[allowedPartitions.length];
+
+        for (int k = 0; k < allowedPartitions.length; k++) {
+            result[k] = partitionSize[allowedPartitions[k]];
+        }
+
+        return result;
+    }
+
+    /**
+     * @param valueReader values of the solution to extract, e.g. the ones of the last solve or of the incumbent
+     */
+    private Solution extractSolution(ValueReader valueReader) throws IloException {
+
+        int numMachines = machineUsageVars.length;
+        int numPartitions = partitionSize.length;
+
+        int cost = 0;
+        boolean[] machineUsage = new boolean[numMachines];
+        int[] partitionAssignment = new int[numPartitions];
+
+        Arrays.fill(partitionAssignment, Solution.UNASSIGNED);
+
+        double[] usageValues = valueReader.getValues(machineUsageVars);
+
+        for (int m = 0; m < numMachines; m++) {
 
+            if (usageValues[m] > 0.5) {
+                machineUsage[m] = true;
+                cost += costPerMachine[m];
+            }
+
+            if(assignmentVarsPerMachine[m].length == 0) continue;
+
+            double[] assignmentValues = valueReader.getValues(assignmentVarsPerMachine[m]);
+
+            for (int k = 0; k < assignmentValues.length; k++) {
+                if (assignmentValues[k] > 0.5) {
+                    partitionAssignment[allowedPartitionsPerMachine[m][k]] = m;
+                }
+            }
+        }
 
+        return new Solution(cost, machineUsage, partitionAssignment);
+    }
+
+    private interface ValueReader {
+        double[] getValues(IloIntVar[] vars) throws IloException;
     }
 
     private void addSimilarMachineConstraint(IloCplex cplex, List<List<Machine<IloIntVar>>> assignmentVarsPerMachine, int numPartitions) throws IloException {
@@ -130,12 +475,16 @@ public class OptimizationSolverCPLEX extends OptimizationSolver {
 
             List<Machine<IloIntVar>> targetMachine = assignmentVarsPerMachine.get(i);
 
+            if(targetMachine.isEmpty()) continue;
+
             int targetMachineCapacity = targetMachine.get(0).getCapacity();
 
             for (int j = i + 1; j < assignmentVarsPerMachine.size(); j++) {
 
                 List<Machine<IloIntVar>> comparisonMachines = assignmentVarsPerMachine.get(j);
 
+                if(comparisonMachines.isEmpty()) continue;
+
                 int comparisonMachineCapacity = comparisonMachines.get(0).getCapacity();
 
                 int memFactor = targetMachineCapacity / comparisonMachineCapacity;
@@ -157,6 +506,8 @@ public class OptimizationSolverCPLEX extends OptimizationSolver {
                             Machine<IloIntVar> machine1 = targetMachine.get(k);
                             Machine<IloIntVar> machine2 = comparisonMachines.get(targetComparisonMachineIndex + l);
 
+                            if(machine1.getPartitionIndexes().length == 0 || machine2.getPartitionIndexes().length == 0) continue;
+
                             cplex.or(cplex.not(cplex.ge(cplex.sum(machine1.getAssignmentVarsPerPartition()), 1)), cplex.eq(cplex.sum(machine2.getAssignmentVarsPerPartition()), 0));
                             cplex.or(cplex.not(cplex.ge(cplex.sum(machine2.getAssignmentVarsPerPartition()), 1)), cplex.eq(cplex.sum(machine1.getAssignmentVarsPerPartition()), 0));
                         }
@@ -167,160 +518,116 @@ public class OptimizationSolverCPLEX extends OptimizationSolver {
         }
     }
 
-    private void addHotColdMachineRestrictions(IloCplex cplex, List<List<Machine<IloIntVar>>> assignmentVarsPerMachine, int numPartitions) throws IloException {
-
-        int numHighHeatPartitions = numPartitions / 2;
-        int numLowHeatPartitions = numPartitions - numHighHeatPartitions;
-
-        List<IloIntVar> varsToZero = new ArrayList<>();
+    /**
+     * Symmetry breaking between machines of the same type: high heat partitions go, in order, to the first
+     * machines of the types that can hold them and low heat partitions to consecutive machines, so every machine
+     * only gets a contiguous range of high heat partitions and a contiguous range of low heat partitions.
+     */
+    private int[][] calcAllowedPartitionsPerMachine(int numPartitions, int numMachines) {
 
-        for (int i = 0; i < 5; i++) {
+        int numHighHeatPartitions = countHighHeatPartitions(numPartitions);
 
-            List<Machine<IloIntVar>> targetMachines = assignmentVarsPerMachine.get(i);
+        int[][] result = new int[numMachines][];
 
-            if(i < 3) {
+        //from the largest to the smallest instance type
+        for (int i = 0; i < NUM_INSTANCE_TYPES; i++) {
 
-                int numHighHeatPartitionsPerMachine = targetMachines.get(0).getCapacity() / HIGH_HEAT_CAPACITY;
-                int numLowHeatPartitionsPerMachine = targetMachines.get(0).getCapacity() / LOW_HEAT_CAPACITY;
+            int type = NUM_INSTANCE_TYPES - 1 - i;
+            int firstIndex = getFirstIndex(type);
+            int numMachinesOfType = numInstancesPerType[type];
 
-                int numMachinesForHighHeat = numHighHeatPartitions / numHighHeatPartitionsPerMachine + (numHighHeatPartitions % numHighHeatPartitionsPerMachine == 0 ? 0 : 1);
+            //e.g. every machine of the type evicted
+            if(numMachinesOfType == 0) continue;
 
-                for (int j = 0; j < targetMachines.size(); j++) {
+            int capacity = capacityPerMachine[firstIndex];
 
-                    IloIntVar[] assignmentVarsPerPartition = targetMachines.get(j).getAssignmentVarsPerPartition();
+            int numLowHeatPartitionsPerMachine = capacity / LOW_HEAT_CAPACITY;
 
-                    if (j < numMachinesForHighHeat) { //machine for high heat partitions
+            if(capacity >= HIGH_HEAT_CAPACITY) {
 
-                        int partitionsThatCanBeAssignedLow = j * numHighHeatPartitionsPerMachine;
-                        int partitionsThatCanBeAssignedHigh = partitionsThatCanBeAssignedLow + (numHighHeatPartitionsPerMachine - 1);
+                int numHighHeatPartitionsPerMachine = capacity / HIGH_HEAT_CAPACITY;
 
-                        for (int k = 0; k < numHighHeatPartitions; k++) {
-                            if (k < partitionsThatCanBeAssignedLow || k > partitionsThatCanBeAssignedHigh) {
-                                if(getVerbosityLevel() == DEBUG) System.out.println("[CONSTRAINT] NOT " + k + " ON MACHINE " + targetMachines.get(j).getId());
-                                //todo cplex.addEq(assignmentVarsPerPartition[k], 0);
-                                varsToZero.add(assignmentVarsPerPartition[k]);
-                                addNewZeroVar(targetMachines.get(j).getId(), k);
-                            }
-                        }
+                int numMachinesForHighHeat = numHighHeatPartitions / numHighHeatPartitionsPerMachine + (numHighHeatPartitions % numHighHeatPartitionsPerMachine == 0 ? 0 : 1);
 
-                        /*restricting partitions with low that can be assigned to machines for high heat partitions*/
+                for (int j = 0; j < numMachinesOfType; j++) {
 
-                        partitionsThatCanBeAssignedLow = j * numLowHeatPartitionsPerMachine + numHighHeatPartitions;
-                        partitionsThatCanBeAssignedHigh = partitionsThatCanBeAssignedLow + (numLowHeatPartitionsPerMachine - 1);
+                    if (j < numMachinesForHighHeat) { //machine for high heat partitions
 
-                        for (int k = numHighHeatPartitions; k < assignmentVarsPerPartition.length; k++) {
-                            if (k < partitionsThatCanBeAssignedLow || k > partitionsThatCanBeAssignedHigh) {
-                                if(getVerbosityLevel() == DEBUG) System.out.println("[CONSTRAINT] NOT " + k + " ON MACHINE " + targetMachines.get(j).getId());
-                                //todo cplex.addEq(assignmentVarsPerPartition[k], 0);
-                                varsToZero.add(assignmentVarsPerPartition[k]);
-                                addNewZeroVar(targetMachines.get(j).getId(), k);
-                            }
-                        }
+                        result[firstIndex + j] = concatRanges(
+                                j * numHighHeatPartitionsPerMachine, numHighHeatPartitionsPerMachine, numHighHeatPartitions,
+                                j * numLowHeatPartitionsPerMachine + numHighHeatPartitions, numLowHeatPartitionsPerMachine, numPartitions);
                     } else { //machine for low heat partitions
 
-                        for (int k = 0; k < numHighHeatPartitions; k++) {
-                            if(getVerbosityLevel() == DEBUG) System.out.println("[CONSTRAINT] NOT " + k + " ON MACHINE " + targetMachines.get(j).getId());
-                            //todo cplex.addEq(assignmentVarsPerPartition[k], 0);
-                            varsToZero.add(assignmentVarsPerPartition[k]);
-                            addNewZeroVar(targetMachines.get(j).getId(), k);
-                        }
-
-                        int partitionsThatCanBeAssignedLow = ((j - numMachinesForHighHeat ) * numLowHeatPartitionsPerMachine) + numHighHeatPartitions;
-                        int partitionsThatCanBeAssignedHigh = partitionsThatCanBeAssignedLow + (numLowHeatPartitionsPerMachine - 1);
-
-                        for (int k = numHighHeatPartitions; k < assignmentVarsPerPartition.length; k++) {
-                            if (k < partitionsThatCanBeAssignedLow || k > partitionsThatCanBeAssignedHigh) {
-                                if(getVerbosityLevel() == DEBUG) System.out.println("[CONSTRAINT] NOT " + k + " ON MACHINE " + targetMachines.get(j).getId());
-                                //todo cplex.addEq(assignmentVarsPerPartition[k], 0);
-                                varsToZero.add(assignmentVarsPerPartition[k]);
-                                addNewZeroVar(targetMachines.get(j).getId(), k);
-                            }
-                        }
+                        result[firstIndex + j] = concatRanges(0, 0, 0,
+                                (j - numMachinesForHighHeat) * numLowHeatPartitionsPerMachine + numHighHeatPartitions, numLowHeatPartitionsPerMachine, numPartitions);
                     }
                 }
             }
             else {
 
-                int numLowHeatPartitionsPerMachine = targetMachines.get(0).getCapacity() / LOW_HEAT_CAPACITY;
-
-                for (int j = 0; j < targetMachines.size(); j++) {
-
-                    IloIntVar[] assignmentVarsPerPartition = targetMachines.get(j).getAssignmentVarsPerPartition();
+                for (int j = 0; j < numMachinesOfType; j++) {
+                    result[firstIndex + j] = concatRanges(0, 0, 0,
+                            j * numLowHeatPartitionsPerMachine + numHighHeatPartitions, numLowHeatPartitionsPerMachine, numPartitions);
+                }
+            }
+        }
 
-                    for (int k = 0; k < numHighHeatPartitions; k++) {
-                        if(getVerbosityLevel() == DEBUG) System.out.println("[CONSTRAINT] NOT " + k + " ON MACHINE " + targetMachines.get(j).getId());
-                        //todo cplex.addEq(assignmentVarsPerPartition[k], 0);
-                        varsToZero.add(assignmentVarsPerPartition[k]);
-                        addNewZeroVar(targetMachines.get(j).getId(), k);
-                    }
+        return result;
+    }
 
-                    int partitionsThatCanBeAssignedLow = (j * numLowHeatPartitionsPerMachine) + numHighHeatPartitions;
-                    int partitionsThatCanBeAssignedHigh = partitionsThatCanBeAssignedLow + (numLowHeatPartitionsPerMachine - 1);
+    private int[][] calcAllPartitionsPerMachine(int numPartitions, int numMachines) {
 
-                    for (int k = numHighHeatPartitions; k < assignmentVarsPerPartition.length; k++) {
-                        if (k < partitionsThatCanBeAssignedLow || k > partitionsThatCanBeAssignedHigh) {
-                            if(getVerbosityLevel() == DEBUG) System.out.println("[CONSTRAINT] NOT " + k + " ON MACHINE " + targetMachines.get(j).getId());
-                            //todo cplex.addEq(assignmentVarsPerPartition[k], 0);
-                            varsToZero.add(assignmentVarsPerPartition[k]);
-                            addNewZeroVar(targetMachines.get(j).getId(), k);
-                        }
-                    }
+        int[] allPartitions = new int[numPartitions];
 
-                }
-
-            }
+        for (int p = 0; p < numPartitions; p++) {
+            allPartitions[p] = p;
         }
 
-        IloIntVar[] varsToZeroArray = varsToZero.toArray(new IloIntVar[varsToZero.size()]);
+        int[][] result = new int[numMachines][];
 
-        cplex.addEq(cplex.sum(varsToZeroArray), 0);
-    }
+        Arrays.fill(result, allPartitions);
 
-    private void addNewZeroVar(int machineID, int partitionID) {
-        this.zeroVars.add(new int[]{machineID, partitionID});
+        return result;
     }
 
-    private List<List<Machine<IloIntVar>>> createMachineTypeList(IloIntVar[][] assignmentMatrixPerMachine) {
-
-        List<Machine<IloIntVar>> clMachines = new ArrayList<>();
-        List<Machine<IloIntVar>> cxlMachines = new ArrayList<>();
-        List<Machine<IloIntVar>> c2xlMachines = new ArrayList<>();
-        List<Machine<IloIntVar>> c4xlMachines = new ArrayList<>();
-        List<Machine<IloIntVar>> c8xlMachines = new ArrayList<>();
+    private int[] concatRanges(int firstStart, int firstLength, int firstLimit, int secondStart, int secondLength, int secondLimit) {
 
+        int firstEnd = Math.min(firstStart + firstLength, firstLimit);
+        int secondEnd = Math.min(secondStart + secondLength, secondLimit);
 
-        int firstIndexCL = getFirstIndex(0);
-        int firstIndexCXL = getFirstIndex(1);
-        int firstIndexC2XL = getFirstIndex(2);
-        int firstIndexC4XL = getFirstIndex(3);
-        int firstIndexC8XL = getFirstIndex(4);
+        int firstSize = Math.max(0, firstEnd - firstStart);
+        int secondSize = Math.max(0, secondEnd - secondStart);
 
-        for (int i = firstIndexCL; i < firstIndexCXL; i++) {
-            clMachines.add(new Machine<>(i, 1, assignmentMatrixPerMachine[i]));
-        }
+        int[] result = new int[firstSize + secondSize];
 
-        for (int i = firstIndexCXL; i < firstIndexC2XL; i++) {
-            cxlMachines.add(new Machine<>(i, 2, assignmentMatrixPerMachine[i]));
+        for (int k = 0; k < firstSize; k++) {
+            result[k] = firstStart + k;
         }
 
-        for (int i = firstIndexC2XL; i < firstIndexC4XL; i++) {
-            c2xlMachines.add(new Machine<>(i, 4, assignmentMatrixPerMachine[i]));
+        for (int k = 0; k < secondSize; k++) {
+            result[firstSize + k] = secondStart + k;
         }
 
-        for (int i = firstIndexC4XL; i < firstIndexC8XL; i++) {
-            c4xlMachines.add(new Machine<>(i, 8, assignmentMatrixPerMachine[i]));
-        }
+        return result;
+    }
 
-        for (int i = firstIndexC8XL; i < assignmentMatrixPerMachine.length; i++) {
-            c8xlMachines.add(new Machine<>(i, 16, assignmentMatrixPerMachine[i]));
-        }
+    private List<List<Machine<IloIntVar>>> createMachineTypeList(IloIntVar[][] assignmentVarsPerMachine) {
 
         List<List<Machine<IloIntVar>>> result = new ArrayList<>();
-        result.add(c8xlMachines);
-        result.add(c4xlMachines);
-        result.add(c2xlMachines);
-        result.add(cxlMachines);
-        result.add(clMachines);
+
+        //from the largest to the smallest instance type
+        for (int type = NUM_INSTANCE_TYPES - 1; type >= 0; type--) {
+
+            List<Machine<IloIntVar>> machines = new ArrayList<>();
+
+            int firstIndex = getFirstIndex(type);
+
+            for (int m = firstIndex; m < firstIndex + numInstancesPerType[type]; m++) {
+                machines.add(new Machine<>(m, capacityPerMachine[m], assignmentVarsPerMachine[m], allowedPartitionsPerMachine[m]));
+            }
+
+            result.add(machines);
+        }
 
         return result;
     }
@@ -397,9 +704,23 @@ public class OptimizationSolverCPLEX extends OptimizationSolver {
         }
     }
 
+    /**
+     * High heat partitions come first, so they are the leading partitions of the high heat size.
+     */
+    private int countHighHeatPartitions(int numPartitions) {
+
+        int result = 0;
+
+        while (result < numPartitions && partitionSize[result] == HIGH_HEAT_CAPACITY) {
+            result++;
+        }
+
+        return result;
+    }
+
     private int calcStartingIndexForLowPartitions(int numMachines, int machineCapacity,int numPartitions) {
 
-        int numHighHeatPartitions = numPartitions / 2;
+        int numHighHeatPartitions = countHighHeatPartitions(numPartitions);
 
         int numHighHeatPartitionsPerMachine = machineCapacity / HIGH_HEAT_CAPACITY;
 
@@ -423,8 +744,35 @@ public class OptimizationSolverCPLEX extends OptimizationSolver {
 
     }
 
+    /**
+     * @return the (machine, partition) pairs excluded from the last model, i.e. the assignments fixed to zero
+     */
     public List<int[]> getZeroVars() {
-        return zeroVars;
+
+        List<int[]> result = new ArrayList<>();
+
+        if(allowedPartitionsPerMachine == null) {
+            return result;
+        }
+
+        int numPartitions = partitionSize.length;
+
+        for (int m = 0; m < allowedPartitionsPerMachine.length; m++) {
+
+            int[] allowedPartitions = allowedPartitionsPerMachine[m];
+            int k = 0;
+
+            for (int p = 0; p < numPartitions; p++) {
+                if (k < allowedPartitions.length && allowedPartitions[k] == p) {
+                    k++;
+                } else {
+                    if(getVerbosityLevel() == DEBUG) System.out.println("[CONSTRAINT] NOT " + p + " ON MACHINE " + m);
+                    result.add(new int[]{m, p});
+                }
+            }
+        }
+
+        return result;
     }
 
     /* public void solveInt() throws IloException {
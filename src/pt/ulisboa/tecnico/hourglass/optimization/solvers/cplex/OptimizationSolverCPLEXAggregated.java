@@ -0,0 +1,214 @@
+package pt.ulisboa.tecnico.hourglass.optimization.solvers.cplex;
+
+import ilog.concert.IloException;
+import ilog.concert.IloIntVar;
+import ilog.cplex.IloCplex;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.OptimizationSolver;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.util.PartitionGroups;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.util.Solution;
+
+import java.util.Arrays;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Count based formulation: instead of one variable per (machine, partition) pair the model decides how many
+ * machines of each instance type are used and how many partitions of each size go to each instance type, so its
+ * size only depends on the number of instance types and distinct partition sizes. The counts are then expanded
+ * into a per partition assignment.
+ *
+ * The aggregated capacity constraint is exact when the partition sizes that fit an instance type divide each
+ * other and its capacity (e.g. sizes 4 and 1 on capacities 1, 2, 4, 8 and 16), which is checked before solving
+ * along with the sizes being positive.
+ */
+public class OptimizationSolverCPLEXAggregated extends OptimizationSolver {
+
+    public void solve(int numPartitions, int numMachines) throws IloException {
+
+        long start = System.nanoTime();
+
+        long allocated = getAllocatedBytes();
+
+        PartitionGroups groups = new PartitionGroups(partitionSize);
+
+        checkDivisibleSizes(groups);
+
+        int numGroups = groups.getNumGroups();
+
+        IloCplex cplex = new IloCplex();
+
+        try {
+
+            IloIntVar[] machinesPerType = new IloIntVar[NUM_INSTANCE_TYPES];
+            IloIntVar[][] partitionsPerType = new IloIntVar[NUM_INSTANCE_TYPES][numGroups];
+
+            int[] typeCost = new int[NUM_INSTANCE_TYPES];
+
+            for (int t = 0; t < NUM_INSTANCE_TYPES; t++) {
+
+                int capacity = getTypeCapacity(t);
+
+                typeCost[t] = getTypeCost(t);
+                machinesPerType[t] = cplex.intVar(0, numInstancesPerType[t]);
+
+                for (int g = 0; g < numGroups; g++) {
+                    int maxPartitions = groups.getSize(g) <= capacity ? groups.getNumPartitions(g) : 0;
+                    partitionsPerType[t][g] = cplex.intVar(0, maxPartitions);
+                }
+
+                //the partitions assigned to a type have to fit in the capacity of the machines used of that type
+                cplex.addLe(cplex.scalProd(partitionsPerType[t], groups.getSizes()), cplex.prod(capacity, machinesPerType[t]));
+            }
+
+            //every partition has to be assigned to one instance type
+            for (int g = 0; g < numGroups; g++) {
+
+                IloIntVar[] groupVars = new IloIntVar[NUM_INSTANCE_TYPES];
+
+                for (int t = 0; t < NUM_INSTANCE_TYPES; t++) {
+                    groupVars[t] = partitionsPerType[t][g];
+                }
+
+                cplex.addEq(cplex.sum(groupVars), groups.getNumPartitions(g));
+            }
+
+            //DEPLOYMENT COST MINIMIZATION
+            cplex.addMinimize(cplex.scalProd(machinesPerType, typeCost));
+
+            cplex.setOut(null);
+
+            cplex.setParam(IloCplex.Param.TimeLimit, timeLimit > 0 ? timeLimit : 1e75);
+
+            cplex.use(new CancelCallback());
+
+            recordPhase(MODEL_BUILD_PHASE, start, allocated);
+
+            if(getMetricsListener() != null) {
+                recordModelSize(cplex.getNcols(), cplex.getNrows(), cplex.getNNZs());
+            }
+
+            start = System.nanoTime();
+
+            allocated = getAllocatedBytes();
+
+            cplex.solve();
+
+            this.solutionOptimal = cplex.getStatus() == IloCplex.Status.Optimal;
+
+            recordPhase(SOLVE_PHASE, start, allocated);
+
+            start = System.nanoTime();
+
+            allocated = getAllocatedBytes();
+
+            int[][] numPartitionsPerType = new int[NUM_INSTANCE_TYPES][];
+
+            for (int t = 0; t < NUM_INSTANCE_TYPES; t++) {
+                numPartitionsPerType[t] = round(cplex.getValues(partitionsPerType[t]));
+            }
+
+            this.solution = expandSolution(groups, numPartitionsPerType, numPartitions, numMachines);
+
+            recordPhase(EXTRACTION_PHASE, start, allocated);
+
+            printSolution(solution);
+
+        } finally {
+            cplex.end();
+        }
+    }
+
+    /**
+     * Packs, for every instance type, the partitions chosen for it by decreasing size on consecutive machines of
+     * that type. With divisible sizes the free capacity left on a machine is always a multiple of the size being
+     * placed, so next fit never leaves a machine partially empty.
+     */
+    private Solution expandSolution(PartitionGroups groups, int[][] numPartitionsPerType, int numPartitions, int numMachines) {
+
+        boolean[] machineUsage = new boolean[numMachines];
+        int[] partitionAssignment = new int[numPartitions];
+
+        Arrays.fill(partitionAssignment, Solution.UNASSIGNED);
+
+        int[] nextPartitionPerGroup = new int[groups.getNumGroups()];
+
+        int cost = 0;
+
+        for (int t = 0; t < NUM_INSTANCE_TYPES; t++) {
+
+            int machine = getFirstIndex(t);
+            int residual = getTypeCapacity(t);
+
+            for (int g = 0; g < groups.getNumGroups(); g++) {
+
+                int size = groups.getSize(g);
+                int[] partitions = groups.getPartitions(g);
+
+                for (int i = 0; i < numPartitionsPerType[t][g]; i++) {
+
+                    if(residual < size) {
+                        machine++;
+                        residual = capacityPerMachine[machine];
+                    }
+
+                    if(!machineUsage[machine]) {
+                        machineUsage[machine] = true;
+                        cost += costPerMachine[machine];
+                    }
+
+                    partitionAssignment[partitions[nextPartitionPerGroup[g]++]] = machine;
+                    residual -= size;
+                }
+            }
+        }
+
+        return new Solution(cost, machineUsage, partitionAssignment);
+    }
+
+    private void checkDivisibleSizes(PartitionGroups groups) {
+
+        for (int size : groups.getSizes()) {
+            if(size <= 0) {
+                throw new IllegalArgumentException("PARTITION SIZE " + size + " IS NOT POSITIVE");
+            }
+        }
+
+        for (int t = 0; t < NUM_INSTANCE_TYPES; t++) {
+
+            int previous = getTypeCapacity(t);
+
+            for (int size : groups.getSizes()) {
+
+                if(size > getTypeCapacity(t)) continue;
+
+                if(previous % size != 0) {
+                    throw new IllegalArgumentException("PARTITION SIZE " + size + " DOES NOT DIVIDE " + previous + " (INSTANCE TYPE " + t + ")");
+                }
+
+                previous = size;
+            }
+        }
+    }
+
+    /**
+     * Aborts the solve once cancelled.
+     */
+    private class CancelCallback extends IloCplex.MIPInfoCallback {
+
+        @Override
+        protected void main() throws IloException {
+            if(isCancelled()) abort();
+        }
+    }
+
+    private static int[] round(double[] values) {
+
+        int[] result = new int[values.length];
+
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (int) Math.round(values[i]);
+        }
+
+        return result;
+    }
+}
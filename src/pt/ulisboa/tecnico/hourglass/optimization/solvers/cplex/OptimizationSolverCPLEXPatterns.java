@@ -0,0 +1,264 @@
+package pt.ulisboa.tecnico.hourglass.optimization.solvers.cplex;
+
+import ilog.concert.IloException;
+import ilog.concert.IloIntVar;
+import ilog.concert.IloLinearIntExpr;
+import ilog.cplex.IloCplex;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.OptimizationSolver;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.util.PartitionGroups;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.util.Solution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Pattern based formulation (as in cutting stock): a pattern is a maximal number of partitions of each distinct
+ * size that fits the capacity of an instance type. All patterns of every type are enumerated and the model only
+ * decides how many machines of each type use each pattern, so machines of the same type are never told apart and
+ * no symmetry breaking constraints are needed. Unlike the count based formulation any positive partition sizes are
+ * supported, but the number of patterns grows quickly with the capacity and the number of distinct sizes: past
+ * MAX_PATTERNS_PER_TYPE patterns for an instance type the solve throws a TooManyPatternsException, which callers
+ * catch to fall back to OptimizationSolverCPLEX (a portfolio just keeps racing its other strategies).
+ */
+public class OptimizationSolverCPLEXPatterns extends OptimizationSolver {
+
+    public static final int MAX_PATTERNS_PER_TYPE = 100000;
+
+    public void solve(int numPartitions, int numMachines) throws IloException {
+
+        long start = System.nanoTime();
+
+        long allocated = getAllocatedBytes();
+
+        PartitionGroups groups = new PartitionGroups(partitionSize);
+
+        for (int size : groups.getSizes()) {
+            if(size <= 0) {
+                throw new IllegalArgumentException("PARTITION SIZE " + size + " IS NOT POSITIVE");
+            }
+        }
+
+        int numGroups = groups.getNumGroups();
+
+        List<List<int[]>> patternsPerType = new ArrayList<>(NUM_INSTANCE_TYPES);
+
+        for (int t = 0; t < NUM_INSTANCE_TYPES; t++) {
+            patternsPerType.add(enumeratePatterns(groups, t));
+        }
+
+        IloCplex cplex = new IloCplex();
+
+        try {
+
+            IloIntVar[][] machinesPerPattern = new IloIntVar[NUM_INSTANCE_TYPES][];
+
+            IloLinearIntExpr[] partitionsCovered = new IloLinearIntExpr[numGroups];
+
+            for (int g = 0; g < numGroups; g++) {
+                partitionsCovered[g] = cplex.linearIntExpr();
+            }
+
+            IloLinearIntExpr deploymentCost = cplex.linearIntExpr();
+
+            for (int t = 0; t < NUM_INSTANCE_TYPES; t++) {
+
+                List<int[]> patterns = patternsPerType.get(t);
+
+                machinesPerPattern[t] = cplex.intVarArray(patterns.size(), 0, numInstancesPerType[t]);
+
+                if(patterns.isEmpty()) continue;
+
+                //at most the number of instances available of the type
+                cplex.addLe(cplex.sum(machinesPerPattern[t]), numInstancesPerType[t]);
+
+                for (int k = 0; k < patterns.size(); k++) {
+
+                    int[] pattern = patterns.get(k);
+
+                    for (int g = 0; g < numGroups; g++) {
+                        if(pattern[g] > 0) partitionsCovered[g].addTerm(pattern[g], machinesPerPattern[t][k]);
+                    }
+
+                    deploymentCost.addTerm(getTypeCost(t), machinesPerPattern[t][k]);
+                }
+            }
+
+            //every partition has to fit in one of the selected patterns
+            for (int g = 0; g < numGroups; g++) {
+                cplex.addGe(partitionsCovered[g], groups.getNumPartitions(g));
+            }
+
+            //DEPLOYMENT COST MINIMIZATION
+            cplex.addMinimize(deploymentCost);
+
+            cplex.setOut(null);
+
+            cplex.setParam(IloCplex.Param.TimeLimit, timeLimit > 0 ? timeLimit : 1e75);
+
+            cplex.use(new CancelCallback());
+
+            recordPhase(MODEL_BUILD_PHASE, start, allocated);
+
+            if(getMetricsListener() != null) {
+                recordModelSize(cplex.getNcols(), cplex.getNrows(), cplex.getNNZs());
+            }
+
+            start = System.nanoTime();
+
+            allocated = getAllocatedBytes();
+
+            cplex.solve();
+
+            this.solutionOptimal = cplex.getStatus() == IloCplex.Status.Optimal;
+
+            recordPhase(SOLVE_PHASE, start, allocated);
+
+            start = System.nanoTime();
+
+            allocated = getAllocatedBytes();
+
+            int[][] numMachinesPerPattern = new int[NUM_INSTANCE_TYPES][];
+
+            for (int t = 0; t < NUM_INSTANCE_TYPES; t++) {
+
+                double[] values = machinesPerPattern[t].length == 0 ? new double[0] : cplex.getValues(machinesPerPattern[t]);
+
+                numMachinesPerPattern[t] = new int[values.length];
+
+                for (int k = 0; k < values.length; k++) {
+                    numMachinesPerPattern[t][k] = (int) Math.round(values[k]);
+                }
+            }
+
+            this.solution = expandSolution(groups, patternsPerType, numMachinesPerPattern, numPartitions, numMachines);
+
+            recordPhase(EXTRACTION_PHASE, start, allocated);
+
+            printSolution(solution);
+
+        } finally {
+            cplex.end();
+        }
+    }
+
+    /**
+     * Aborts the solve once cancelled.
+     */
+    private class CancelCallback extends IloCplex.MIPInfoCallback {
+
+        @Override
+        protected void main() throws IloException {
+            if(isCancelled()) abort();
+        }
+    }
+
+    /**
+     * Enumerates the maximal packings of partition sizes onto one machine of the given capacity, i.e. the ones
+     * where no other partition that is still available fits in the remaining capacity.
+     */
+    private List<int[]> enumeratePatterns(PartitionGroups groups, int type) {
+
+        List<int[]> result = new ArrayList<>();
+
+        int capacity = getTypeCapacity(type);
+
+        if(capacity > 0) {
+            enumeratePatterns(groups, type, 0, capacity, new int[groups.getNumGroups()], result);
+        }
+
+        return result;
+    }
+
+    private void enumeratePatterns(PartitionGroups groups, int type, int group, int residual, int[] pattern, List<int[]> result) {
+
+        if(group == groups.getNumGroups()) {
+            if(isMaximal(groups, pattern, residual) && !isEmpty(pattern)) {
+
+                if(result.size() == MAX_PATTERNS_PER_TYPE) {
+                    throw new TooManyPatternsException(type);
+                }
+
+                result.add(pattern.clone());
+            }
+            return;
+        }
+
+        int size = groups.getSize(group);
+        int maxPartitions = Math.min(groups.getNumPartitions(group), residual / size);
+
+        for (int n = maxPartitions; n >= 0; n--) {
+            pattern[group] = n;
+            enumeratePatterns(groups, type, group + 1, residual - n * size, pattern, result);
+        }
+
+        pattern[group] = 0;
+    }
+
+    private boolean isMaximal(PartitionGroups groups, int[] pattern, int residual) {
+
+        for (int g = 0; g < pattern.length; g++) {
+            if(pattern[g] < groups.getNumPartitions(g) && groups.getSize(g) <= residual) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isEmpty(int[] pattern) {
+
+        for (int n : pattern) {
+            if(n > 0) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Gives every machine selected with a pattern the next partitions of each size allowed by the pattern. As
+     * patterns may cover more partitions than the ones left, machines that end up empty are not used.
+     */
+    private Solution expandSolution(PartitionGroups groups, List<List<int[]>> patternsPerType, int[][] numMachinesPerPattern, int numPartitions, int numMachines) {
+
+        boolean[] machineUsage = new boolean[numMachines];
+        int[] partitionAssignment = new int[numPartitions];
+
+        Arrays.fill(partitionAssignment, Solution.UNASSIGNED);
+
+        int[] nextPartitionPerGroup = new int[groups.getNumGroups()];
+
+        int cost = 0;
+
+        for (int t = 0; t < NUM_INSTANCE_TYPES; t++) {
+
+            int machine = getFirstIndex(t);
+
+            for (int k = 0; k < numMachinesPerPattern[t].length; k++) {
+
+                int[] pattern = patternsPerType.get(t).get(k);
+
+                for (int i = 0; i < numMachinesPerPattern[t][k]; i++, machine++) {
+
+                    for (int g = 0; g < pattern.length; g++) {
+
+                        int[] partitions = groups.getPartitions(g);
+
+                        for (int n = 0; n < pattern[g] && nextPartitionPerGroup[g] < partitions.length; n++) {
+                            partitionAssignment[partitions[nextPartitionPerGroup[g]++]] = machine;
+                            machineUsage[machine] = true;
+                        }
+                    }
+
+                    if(machineUsage[machine]) {
+                        cost += costPerMachine[machine];
+                    }
+                }
+            }
+        }
+
+        return new Solution(cost, machineUsage, partitionAssignment);
+    }
+}
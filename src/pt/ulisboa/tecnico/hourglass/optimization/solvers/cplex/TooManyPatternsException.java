@@ -0,0 +1,22 @@
+package pt.ulisboa.tecnico.hourglass.optimization.solvers.cplex;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Thrown by OptimizationSolverCPLEXPatterns, before any model is built, when an instance type has more than
+ * OptimizationSolverCPLEXPatterns.MAX_PATTERNS_PER_TYPE patterns. The instance can still be solved by a formulation
+ * that does not enumerate patterns, e.g. OptimizationSolverCPLEX.
+ */
+public class TooManyPatternsException extends IllegalStateException {
+
+    private final int instanceType;
+
+    public TooManyPatternsException(int instanceType) {
+        super("MORE THAN " + OptimizationSolverCPLEXPatterns.MAX_PATTERNS_PER_TYPE + " PATTERNS FOR INSTANCE TYPE " + instanceType);
+        this.instanceType = instanceType;
+    }
+
+    public int getInstanceType() {
+        return instanceType;
+    }
+}
@@ -0,0 +1,347 @@
+package pt.ulisboa.tecnico.hourglass.optimization.solvers.heuristic;
+
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.OptimizationSolver;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.util.Solution;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Pure java planner for the machine selection / partition assignment problem. Partitions are placed by
+ * decreasing size with best fit on the machines already selected, a new machine being selected (the one with
+ * the lowest cost per usable capacity unit) only when no selected machine can take the partition. The initial
+ * placement is then improved by emptying machines whose partitions fit on the remaining ones and by replacing
+ * machines with cheaper ones that still hold their load.
+ */
+public class OptimizationSolverHeuristic extends OptimizationSolver {
+
+    private static final int MAX_IMPROVEMENT_PASSES = 10;
+
+    private int[] machineType;
+
+    private int[] load;
+
+    private boolean[] machineUsage;
+
+    private int[] partitionAssignment;
+
+    private List<List<Integer>> partitionsPerMachine;
+
+    private List<Deque<Integer>> freeMachinesPerType;
+
+    /* selected machines indexed by residual capacity, key = (residual << 32) | machine */
+    private TreeSet<Long> residualIndex;
+
+    @Override
+    protected void solve(int numPartitions, int numMachines) {
+
+        long start = System.nanoTime();
+
+        long allocated = getAllocatedBytes();
+
+        init(numPartitions, numMachines);
+
+        int[] partitionsBySize = sortPartitionsBySizeDesc(numPartitions);
+
+        long remainingDemand = 0;
+
+        for (int size : partitionSize) {
+            remainingDemand += size;
+        }
+
+        //initial placement: best fit decreasing over the selected machines
+        for (int p : partitionsBySize) {
+
+            int m = findBestFit(partitionSize[p]);
+
+            if(m < 0) {
+                m = selectNewMachine(partitionSize[p], remainingDemand);
+            }
+
+            place(p, m);
+
+            remainingDemand -= partitionSize[p];
+        }
+
+        //improvement passes, skipped once cancelled as the placement is already valid
+        for (int i = 0; i < MAX_IMPROVEMENT_PASSES && !isCancelled(); i++) {
+
+            boolean improved = emptyMachines();
+
+            improved |= downsizeMachines();
+
+            if(!improved) {
+                break;
+            }
+        }
+
+        int cost = 0;
+
+        for (int m = 0; m < numMachines; m++) {
+            if(machineUsage[m]) cost += costPerMachine[m];
+        }
+
+        this.solution = new Solution(cost, machineUsage, partitionAssignment);
+
+        recordPhase(SOLVE_PHASE, start, allocated);
+
+        recordIncumbent(cost, Double.NaN, solution);
+
+        printSolution(solution);
+    }
+
+    private void init(int numPartitions, int numMachines) {
+
+        this.machineType = new int[numMachines];
+        this.load = new int[numMachines];
+        this.machineUsage = new boolean[numMachines];
+        this.partitionAssignment = new int[numPartitions];
+        this.partitionsPerMachine = new ArrayList<>(numMachines);
+        this.freeMachinesPerType = new ArrayList<>(NUM_INSTANCE_TYPES);
+        this.residualIndex = new TreeSet<>();
+
+        Arrays.fill(partitionAssignment, Solution.UNASSIGNED);
+
+        for (int m = 0; m < numMachines; m++) {
+            partitionsPerMachine.add(new ArrayList<Integer>());
+        }
+
+        for (int t = 0; t < NUM_INSTANCE_TYPES; t++) {
+
+            Deque<Integer> freeMachines = new ArrayDeque<>();
+
+            int firstIndex = getFirstIndex(t);
+
+            for (int m = firstIndex; m < firstIndex + numInstancesPerType[t]; m++) {
+                machineType[m] = t;
+                freeMachines.addLast(m);
+            }
+
+            freeMachinesPerType.add(freeMachines);
+        }
+    }
+
+    private int[] sortPartitionsBySizeDesc(int numPartitions) {
+
+        long[] keys = new long[numPartitions];
+
+        for (int p = 0; p < numPartitions; p++) {
+            keys[p] = ((long) -partitionSize[p] << 32) | p;
+        }
+
+        Arrays.sort(keys);
+
+        int[] result = new int[numPartitions];
+
+        for (int i = 0; i < numPartitions; i++) {
+            result[i] = (int) keys[i];
+        }
+
+        return result;
+    }
+
+    private int findBestFit(int size) {
+
+        Long entry = residualIndex.ceiling((long) size << 32);
+
+        return entry == null ? -1 : (int) (long) entry;
+    }
+
+    /**
+     * Selects the free machine with the lowest cost per capacity unit that can still be used, ties broken by the
+     * smallest capacity. Capacity beyond the remaining demand is not accounted as usable, at least one unit being
+     * so that zero size partitions left on their own still get the cheapest machine.
+     */
+    private int selectNewMachine(int size, long remainingDemand) {
+
+        int result = -1;
+        double bestCostPerUnit = Double.MAX_VALUE;
+
+        for (Deque<Integer> freeMachines : freeMachinesPerType) {
+
+            if(freeMachines.isEmpty()) continue;
+
+            int m = freeMachines.peekFirst();
+
+            if(capacityPerMachine[m] < size) continue;
+
+            double costPerUnit = (double) costPerMachine[m] / Math.max(1, Math.min(capacityPerMachine[m], remainingDemand));
+
+            if(costPerUnit < bestCostPerUnit || (result >= 0 && costPerUnit == bestCostPerUnit && capacityPerMachine[m] < capacityPerMachine[result])) {
+                bestCostPerUnit = costPerUnit;
+                result = m;
+            }
+        }
+
+        if(result < 0) {
+            throw new IllegalStateException("NO MACHINE AVAILABLE FOR PARTITION OF SIZE " + size);
+        }
+
+        freeMachinesPerType.get(machineType[result]).pollFirst();
+
+        machineUsage[result] = true;
+        residualIndex.add(residualKey(result));
+
+        return result;
+    }
+
+    private void place(int p, int m) {
+
+        residualIndex.remove(residualKey(m));
+
+        load[m] += partitionSize[p];
+        partitionAssignment[p] = m;
+        partitionsPerMachine.get(m).add(p);
+
+        residualIndex.add(residualKey(m));
+    }
+
+    private void releaseMachine(int m) {
+
+        residualIndex.remove(residualKey(m));
+
+        machineUsage[m] = false;
+        load[m] = 0;
+        partitionsPerMachine.get(m).clear();
+
+        freeMachinesPerType.get(machineType[m]).addFirst(m);
+    }
+
+    /**
+     * Tries to move every partition of a selected machine to the spare capacity of the other selected machines,
+     * starting with the machines with the highest cost per unit of load.
+     */
+    private boolean emptyMachines() {
+
+        boolean improved = false;
+
+        for (int m : sortUsedMachinesByCostPerLoadDesc()) {
+
+            if(!machineUsage[m]) continue;
+
+            residualIndex.remove(residualKey(m));
+
+            List<Integer> partitions = new ArrayList<>(partitionsPerMachine.get(m));
+            int[] targets = new int[partitions.size()];
+
+            int moved = 0;
+
+            for (; moved < partitions.size(); moved++) {
+
+                int size = partitionSize[partitions.get(moved)];
+                int target = findBestFit(size);
+
+                if(target < 0) break;
+
+                residualIndex.remove(residualKey(target));
+                load[target] += size;
+                residualIndex.add(residualKey(target));
+
+                targets[moved] = target;
+            }
+
+            if(moved < partitions.size()) {
+
+                //rollback the tentative moves
+                for (int i = moved - 1; i >= 0; i--) {
+                    residualIndex.remove(residualKey(targets[i]));
+                    load[targets[i]] -= partitionSize[partitions.get(i)];
+                    residualIndex.add(residualKey(targets[i]));
+                }
+
+                residualIndex.add(residualKey(m));
+                continue;
+            }
+
+            for (int i = 0; i < partitions.size(); i++) {
+                partitionAssignment[partitions.get(i)] = targets[i];
+                partitionsPerMachine.get(targets[i]).add(partitions.get(i));
+            }
+
+            residualIndex.add(residualKey(m));
+            releaseMachine(m);
+
+            improved = true;
+        }
+
+        return improved;
+    }
+
+    /**
+     * Replaces each selected machine by the cheapest free machine whose capacity still holds its load.
+     */
+    private boolean downsizeMachines() {
+
+        boolean improved = false;
+
+        for (int m = 0; m < machineUsage.length; m++) {
+
+            if(!machineUsage[m]) continue;
+
+            int replacement = -1;
+
+            for (Deque<Integer> freeMachines : freeMachinesPerType) {
+
+                if(freeMachines.isEmpty()) continue;
+
+                int candidate = freeMachines.peekFirst();
+
+                if(capacityPerMachine[candidate] >= load[m] && costPerMachine[candidate] < (replacement < 0 ? costPerMachine[m] : costPerMachine[replacement])) {
+                    replacement = candidate;
+                }
+            }
+
+            if(replacement < 0) continue;
+
+            freeMachinesPerType.get(machineType[replacement]).pollFirst();
+
+            machineUsage[replacement] = true;
+            residualIndex.add(residualKey(replacement));
+
+            for (int p : new ArrayList<>(partitionsPerMachine.get(m))) {
+                place(p, replacement);
+            }
+
+            releaseMachine(m);
+
+            improved = true;
+        }
+
+        return improved;
+    }
+
+    private int[] sortUsedMachinesByCostPerLoadDesc() {
+
+        List<Integer> usedMachines = new ArrayList<>();
+
+        for (int m = 0; m < machineUsage.length; m++) {
+            if(machineUsage[m]) usedMachines.add(m);
+        }
+
+        final double[] costPerLoad = new double[machineUsage.length];
+
+        for (int m : usedMachines) {
+            costPerLoad[m] = (double) costPerMachine[m] / Math.max(1, load[m]);
+        }
+
+        usedMachines.sort((m1, m2) -> Double.compare(costPerLoad[m2], costPerLoad[m1]));
+
+        int[] result = new int[usedMachines.size()];
+
+        for (int i = 0; i < result.length; i++) {
+            result[i] = usedMachines.get(i);
+        }
+
+        return result;
+    }
+
+    private long residualKey(int m) {
+        return ((long) (capacityPerMachine[m] - load[m]) << 32) | m;
+    }
+}
@@ -0,0 +1,162 @@
+package pt.ulisboa.tecnico.hourglass.optimization.solvers.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.OptimizationSolver;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Publishes the metrics as Java Flight Recorder events, next to the GC and allocation events of the JVM (e.g.
+ * java -XX:StartFlightRecording=filename=solve.jfr). Nothing is recorded while the events are disabled.
+ */
+public class JFRSolverMetricsListener implements SolverMetricsListener {
+
+    @Override
+    public void onPhase(OptimizationSolver solver, String phase, long nanos, long allocatedBytes) {
+
+        PhaseEvent event = new PhaseEvent();
+
+        if(!event.isEnabled()) return;
+
+        event.solver = solver.getClass().getSimpleName();
+        event.phase = phase;
+        event.phaseDuration = nanos;
+        event.allocatedBytes = allocatedBytes;
+
+        event.commit();
+    }
+
+    @Override
+    public void onSubPhase(OptimizationSolver solver, String phase, String subPhase, long nanos, long allocatedBytes) {
+
+        SubPhaseEvent event = new SubPhaseEvent();
+
+        if(!event.isEnabled()) return;
+
+        event.solver = solver.getClass().getSimpleName();
+        event.phase = phase;
+        event.subPhase = subPhase;
+        event.subPhaseDuration = nanos;
+        event.allocatedBytes = allocatedBytes;
+
+        event.commit();
+    }
+
+    @Override
+    public void onModelSize(OptimizationSolver solver, int numVariables, int numConstraints, long numNonZeros) {
+
+        ModelSizeEvent event = new ModelSizeEvent();
+
+        if(!event.isEnabled()) return;
+
+        event.solver = solver.getClass().getSimpleName();
+        event.numVariables = numVariables;
+        event.numConstraints = numConstraints;
+        event.numNonZeros = numNonZeros;
+
+        event.commit();
+    }
+
+    @Override
+    public void onIncumbent(OptimizationSolver solver, double objective, double bestBound, long nanosSinceStart) {
+
+        IncumbentEvent event = new IncumbentEvent();
+
+        if(!event.isEnabled()) return;
+
+        event.solver = solver.getClass().getSimpleName();
+        event.objective = objective;
+        event.bestBound = bestBound;
+        event.timeSinceStart = nanosSinceStart;
+
+        event.commit();
+    }
+
+    @Name("pt.ulisboa.tecnico.hourglass.SolverPhase")
+    @Label("Solver Phase")
+    @Category({"Hourglass", "Optimization"})
+    static class PhaseEvent extends Event {
+
+        @Label("Solver")
+        String solver;
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Phase Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long phaseDuration;
+
+        /* -1 when not measured */
+        @Label("Allocated")
+        @DataAmount
+        long allocatedBytes;
+    }
+
+    /* a separate type, so that summing the phase events does not count the time of the sub-phases twice */
+    @Name("pt.ulisboa.tecnico.hourglass.SolverSubPhase")
+    @Label("Solver Sub-Phase")
+    @Category({"Hourglass", "Optimization"})
+    static class SubPhaseEvent extends Event {
+
+        @Label("Solver")
+        String solver;
+
+        @Label("Phase")
+        String phase;
+
+        @Label("Sub-Phase")
+        String subPhase;
+
+        @Label("Sub-Phase Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long subPhaseDuration;
+
+        /* -1 when not measured */
+        @Label("Allocated")
+        @DataAmount
+        long allocatedBytes;
+    }
+
+    @Name("pt.ulisboa.tecnico.hourglass.SolverModelSize")
+    @Label("Solver Model Size")
+    @Category({"Hourglass", "Optimization"})
+    static class ModelSizeEvent extends Event {
+
+        @Label("Solver")
+        String solver;
+
+        @Label("Variables")
+        int numVariables;
+
+        @Label("Constraints")
+        int numConstraints;
+
+        @Label("Non Zeros")
+        long numNonZeros;
+    }
+
+    @Name("pt.ulisboa.tecnico.hourglass.SolverIncumbent")
+    @Label("Solver Incumbent")
+    @Category({"Hourglass", "Optimization"})
+    static class IncumbentEvent extends Event {
+
+        @Label("Solver")
+        String solver;
+
+        @Label("Objective")
+        double objective;
+
+        @Label("Best Bound")
+        double bestBound;
+
+        @Label("Time Since Start")
+        @Timespan(Timespan.NANOSECONDS)
+        long timeSinceStart;
+    }
+}
@@ -0,0 +1,218 @@
+package pt.ulisboa.tecnico.hourglass.optimization.solvers.metrics;
+
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.OptimizationSolver;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Keeps, in memory, per phase totals over every solve reported to it and the model size and incumbents of the
+ * last one. Use one aggregator per solver to tell solvers apart.
+ */
+public class SolverMetricsAggregator implements SolverMetricsListener {
+
+    private final Map<String, PhaseStatistics> statisticsPerPhase = new LinkedHashMap<>();
+
+    /* kept apart, their time being part of the one of their phase */
+    private final Map<String, PhaseStatistics> statisticsPerSubPhase = new LinkedHashMap<>();
+
+    private int numVariables;
+
+    private int numConstraints;
+
+    private long numNonZeros;
+
+    private int numIncumbents;
+
+    private double lastIncumbentObjective = Double.NaN;
+
+    private double lastBestBound = Double.NaN;
+
+    private long lastIncumbentNanos;
+
+    @Override
+    public synchronized void onPhase(OptimizationSolver solver, String phase, long nanos, long allocatedBytes) {
+        statisticsPerPhase.computeIfAbsent(phase, k -> new PhaseStatistics()).add(nanos, allocatedBytes);
+    }
+
+    @Override
+    public synchronized void onSubPhase(OptimizationSolver solver, String phase, String subPhase, long nanos, long allocatedBytes) {
+        statisticsPerSubPhase.computeIfAbsent(phase + "." + subPhase, k -> new PhaseStatistics()).add(nanos, allocatedBytes);
+    }
+
+    @Override
+    public synchronized void onModelSize(OptimizationSolver solver, int numVariables, int numConstraints, long numNonZeros) {
+        this.numVariables = numVariables;
+        this.numConstraints = numConstraints;
+        this.numNonZeros = numNonZeros;
+    }
+
+    @Override
+    public synchronized void onIncumbent(OptimizationSolver solver, double objective, double bestBound, long nanosSinceStart) {
+        numIncumbents++;
+        this.lastIncumbentObjective = objective;
+        this.lastBestBound = bestBound;
+        this.lastIncumbentNanos = nanosSinceStart;
+    }
+
+    /**
+     * @return a copy of the statistics of every phase, in the order the phases were first reported
+     */
+    public synchronized Map<String, PhaseStatistics> getStatisticsPerPhase() {
+        return copy(statisticsPerPhase);
+    }
+
+    /**
+     * @return a copy of the statistics of every sub-phase, keyed by phase.subPhase
+     */
+    public synchronized Map<String, PhaseStatistics> getStatisticsPerSubPhase() {
+        return copy(statisticsPerSubPhase);
+    }
+
+    private static Map<String, PhaseStatistics> copy(Map<String, PhaseStatistics> statistics) {
+
+        Map<String, PhaseStatistics> result = new LinkedHashMap<>();
+
+        for (Map.Entry<String, PhaseStatistics> entry : statistics.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().copy());
+        }
+
+        return result;
+    }
+
+    public synchronized int getNumVariables() {
+        return numVariables;
+    }
+
+    public synchronized int getNumConstraints() {
+        return numConstraints;
+    }
+
+    public synchronized long getNumNonZeros() {
+        return numNonZeros;
+    }
+
+    public synchronized int getNumIncumbents() {
+        return numIncumbents;
+    }
+
+    public synchronized double getLastIncumbentObjective() {
+        return lastIncumbentObjective;
+    }
+
+    public synchronized double getLastBestBound() {
+        return lastBestBound;
+    }
+
+    public synchronized double getLastIncumbentMillis() {
+        return lastIncumbentNanos / 1e6;
+    }
+
+    public synchronized void clear() {
+        statisticsPerPhase.clear();
+        statisticsPerSubPhase.clear();
+        numVariables = 0;
+        numConstraints = 0;
+        numNonZeros = 0;
+        numIncumbents = 0;
+        lastIncumbentObjective = Double.NaN;
+        lastBestBound = Double.NaN;
+        lastIncumbentNanos = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+
+        StringBuilder result = new StringBuilder();
+
+        for (Map.Entry<String, PhaseStatistics> entry : statisticsPerPhase.entrySet()) {
+            result.append("[INFO] PHASE ").append(entry.getKey().toUpperCase()).append(": ").append(entry.getValue()).append('\n');
+        }
+
+        for (Map.Entry<String, PhaseStatistics> entry : statisticsPerSubPhase.entrySet()) {
+            result.append("[INFO]   SUB-PHASE ").append(entry.getKey().toUpperCase()).append(": ").append(entry.getValue()).append('\n');
+        }
+
+        result.append("[INFO] MODEL: ").append(numVariables).append(" VARIABLES, ")
+                .append(numConstraints).append(" CONSTRAINTS, ")
+                .append(numNonZeros).append(" NON ZEROS\n");
+
+        result.append("[INFO] INCUMBENTS: ").append(numIncumbents)
+                .append(" LAST: ").append(lastIncumbentObjective)
+                .append(" AFTER ").append(String.format("%.3f", getLastIncumbentMillis())).append(" MILLIS");
+
+        return result.toString();
+    }
+
+    public static class PhaseStatistics {
+
+        private int count;
+
+        private long totalNanos;
+
+        private long maxNanos;
+
+        /* only over the occurrences where allocation was measured */
+        private int numAllocationSamples;
+
+        private long totalAllocatedBytes;
+
+        private void add(long nanos, long allocatedBytes) {
+
+            count++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+
+            if(allocatedBytes >= 0) {
+                numAllocationSamples++;
+                totalAllocatedBytes += allocatedBytes;
+            }
+        }
+
+        private PhaseStatistics copy() {
+
+            PhaseStatistics result = new PhaseStatistics();
+
+            result.count = count;
+            result.totalNanos = totalNanos;
+            result.maxNanos = maxNanos;
+            result.numAllocationSamples = numAllocationSamples;
+            result.totalAllocatedBytes = totalAllocatedBytes;
+
+            return result;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getTotalMillis() {
+            return totalNanos / 1e6;
+        }
+
+        public double getAverageMillis() {
+            return count == 0 ? 0 : totalNanos / 1e6 / count;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos / 1e6;
+        }
+
+        /**
+         * @return -1 when allocation was never measured
+         */
+        public long getAverageAllocatedBytes() {
+            return numAllocationSamples == 0 ? -1 : totalAllocatedBytes / numAllocationSamples;
+        }
+
+        @Override
+        public String toString() {
+            return count + " RUNS"
+                    + " AVG: " + String.format("%.3f", getAverageMillis()) + " MILLIS"
+                    + " MAX: " + String.format("%.3f", getMaxMillis()) + " MILLIS"
+                    + " AVG ALLOCATED: " + getAverageAllocatedBytes() + " BYTES";
+        }
+    }
+}
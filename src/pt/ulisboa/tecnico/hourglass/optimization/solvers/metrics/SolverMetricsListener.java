@@ -0,0 +1,35 @@
+package pt.ulisboa.tecnico.hourglass.optimization.solvers.metrics;
+
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.OptimizationSolver;
+
+/**
+ * Created by Pedro Joaquim.
+ */
+public interface SolverMetricsListener {
+
+    /**
+     * Called at the end of every phase of a solve (e.g. OptimizationSolver.MODEL_BUILD_PHASE).
+     *
+     * @param allocatedBytes bytes allocated by the solving thread during the phase, -1 when not measured
+     */
+    void onPhase(OptimizationSolver solver, String phase, long nanos, long allocatedBytes);
+
+    /**
+     * Called at the end of every part of a phase that is broken down, before onPhase for the whole phase, which
+     * already includes its time and allocation.
+     */
+    void onSubPhase(OptimizationSolver solver, String phase, String subPhase, long nanos, long allocatedBytes);
+
+    /**
+     * Called once the model of a solver that builds one is complete.
+     */
+    void onModelSize(OptimizationSolver solver, int numVariables, int numConstraints, long numNonZeros);
+
+    /**
+     * Called every time the solver finds a better solution.
+     *
+     * @param bestBound best lower bound on the objective, NaN when the solver does not compute one
+     * @param nanosSinceStart time since the solve started
+     */
+    void onIncumbent(OptimizationSolver solver, double objective, double bestBound, long nanosSinceStart);
+}
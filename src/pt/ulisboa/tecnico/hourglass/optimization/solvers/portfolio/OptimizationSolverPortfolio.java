@@ -0,0 +1,308 @@
+package pt.ulisboa.tecnico.hourglass.optimization.solvers.portfolio;
+
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.OptimizationSolver;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.util.Solution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Races several solvers (e.g. the CPLEX model with different parameters and the heuristic) on the same instance,
+ * each one on its own thread, keeping the cheapest solution. Every improvement, including the incumbents found by
+ * strategies still running, is published to the listener and kept in getBestSolution as soon as it is found. With
+ * a time limit the strategies still running at the deadline are cancelled, those that support it returning their
+ * incumbent, and the best solution found until then is kept.
+ */
+public class OptimizationSolverPortfolio extends OptimizationSolver {
+
+    /* extra time given to cancelled strategies to return their incumbent, in millis */
+    private static final long CANCEL_GRACE_MILLIS = 1000;
+
+    private final List<OptimizationSolver> strategies = new ArrayList<>();
+
+    private SolutionListener solutionListener;
+
+    /* cheapest solution found by the running or last solve */
+    private volatile Solution bestSolution;
+
+    /**
+     * @param strategies at least one, more can be added with addStrategy
+     */
+    public OptimizationSolverPortfolio(OptimizationSolver... strategies) {
+
+        if(strategies.length == 0) {
+            throw new IllegalArgumentException("A PORTFOLIO NEEDS AT LEAST ONE STRATEGY");
+        }
+
+        this.strategies.addAll(Arrays.asList(strategies));
+    }
+
+    public OptimizationSolverPortfolio addStrategy(OptimizationSolver strategy) {
+        strategies.add(strategy);
+        return this;
+    }
+
+    public OptimizationSolverPortfolio setSolutionListener(SolutionListener solutionListener) {
+        this.solutionListener = solutionListener;
+        return this;
+    }
+
+    @Override
+    protected void solve(int numPartitions, int numMachines) throws Exception {
+
+        long start = System.nanoTime();
+
+        long allocated = getAllocatedBytes();
+
+        long deadline = timeLimit > 0 ? start + (long) (timeLimit * 1e9) : Long.MAX_VALUE;
+
+        ExecutorService executor = Executors.newFixedThreadPool(strategies.size());
+        CompletionService<OptimizationSolver> completionService = new ExecutorCompletionService<>(executor);
+
+        List<Future<OptimizationSolver>> futures = new ArrayList<>();
+        List<Exception> failures = new ArrayList<>();
+
+        this.bestSolution = null;
+
+        //cost of the cheapest solution a strategy proved optimal
+        int optimalCost = Integer.MAX_VALUE;
+
+        try {
+
+            for (OptimizationSolver strategy : strategies) {
+
+                prepareStrategy(strategy);
+
+                //a cancel from now on stops the strategy even if its task has not started yet
+                strategy.clearCancelled();
+
+                futures.add(completionService.submit(() -> {
+
+                    if(startSolution != null) {
+                        strategy.resolve(startSolution);
+                    } else {
+                        strategy.solve();
+                    }
+
+                    return strategy;
+                }));
+            }
+
+            int pending = futures.size();
+            boolean cancelling = false;
+
+            while (pending > 0) {
+
+                if(!cancelling && (isCancelled() || System.nanoTime() >= deadline)) {
+
+                    //the cancelled strategies that stop in time still compete
+                    cancelStrategies();
+                    cancelling = true;
+
+                    deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CANCEL_GRACE_MILLIS);
+                }
+
+                Future<OptimizationSolver> done = completionService.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+
+                if(done == null) {
+                    if(cancelling) break;
+                    continue;
+                }
+
+                pending--;
+
+                try {
+
+                    OptimizationSolver strategy = done.get();
+
+                    publish(strategy.getSolution(), strategy);
+
+                    if(strategy.isSolutionOptimal()) {
+                        optimalCost = Math.min(optimalCost, strategy.getSolution().getCost());
+                    }
+
+                } catch (ExecutionException e) {
+                    failures.add(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+                }
+            }
+
+        } finally {
+
+            cancelStrategies();
+
+            for (Future<OptimizationSolver> future : futures) {
+                future.cancel(true);
+            }
+
+            executor.shutdownNow();
+
+            awaitStrategies(executor);
+        }
+
+        Solution best = bestSolution;
+
+        if(best == null) {
+
+            IllegalStateException exception = new IllegalStateException("NO STRATEGY FOUND A SOLUTION");
+
+            for (Exception failure : failures) {
+                exception.addSuppressed(failure);
+            }
+
+            throw exception;
+        }
+
+        this.solution = best;
+        this.solutionOptimal = best.getCost() == optimalCost;
+
+        recordPhase(SOLVE_PHASE, start, allocated);
+
+        printSolution(solution);
+    }
+
+    private void prepareStrategy(OptimizationSolver strategy) {
+
+        strategy.setPartitionSize(partitionSize)
+                .setCapacityPerMachine(capacityPerMachine)
+                .setCostPerMachine(costPerMachine)
+                .setNumInstancesPerType(numInstancesPerType)
+                .setTimeLimit(timeLimit);
+
+        chainIncumbentListener(strategy);
+
+        //the phases of every strategy are reported to the listener of the portfolio
+        if(getMetricsListener() != null) {
+            strategy.setMetricsListener(getMetricsListener());
+        }
+
+        if(isReconfiguring()) {
+            strategy.setCurrentAssignment(currentAssignment, migrationCostPerPartition);
+        }
+    }
+
+    /**
+     * The incumbents of the strategy are published, after being passed to the listener the strategy already had. The
+     * listener is only chained once, however many times the strategy solves.
+     */
+    private void chainIncumbentListener(OptimizationSolver strategy) {
+
+        SolutionListener previous = strategy.getIncumbentListener();
+
+        if(previous instanceof IncumbentPublisher && ((IncumbentPublisher) previous).getPortfolio() == this) {
+            return;
+        }
+
+        strategy.setIncumbentListener(new IncumbentPublisher(previous));
+    }
+
+    private class IncumbentPublisher implements SolutionListener {
+
+        /* listener of the strategy itself, null if none */
+        private final SolutionListener previous;
+
+        private IncumbentPublisher(SolutionListener previous) {
+            this.previous = previous;
+        }
+
+        private OptimizationSolverPortfolio getPortfolio() {
+            return OptimizationSolverPortfolio.this;
+        }
+
+        @Override
+        public void onSolution(Solution solution, OptimizationSolver strategy) {
+
+            if(previous != null) {
+                previous.onSolution(solution, strategy);
+            }
+
+            publish(solution, strategy);
+        }
+    }
+
+    /**
+     * Native solvers ignore interrupts, so a strategy past the grace period is still running on its model. It
+     * stops soon as it was cancelled, and is waited for so that the next call on it does not run concurrently.
+     */
+    private void awaitStrategies(ExecutorService executor) {
+
+        boolean interrupted = false;
+
+        while (true) {
+            try {
+                if(executor.awaitTermination(CANCEL_GRACE_MILLIS, TimeUnit.MILLISECONDS)) break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void publish(Solution candidate, OptimizationSolver strategy) {
+
+        if(candidate == null || (bestSolution != null && candidate.getCost() >= bestSolution.getCost())) {
+            return;
+        }
+
+        this.bestSolution = candidate;
+
+        recordIncumbent(candidate.getCost(), Double.NaN, candidate);
+
+        if(solutionListener != null && !isQuiet()) {
+            solutionListener.onSolution(candidate, strategy);
+        }
+    }
+
+    /**
+     * @return the cheapest solution found so far, available while the strategies are still racing
+     */
+    public Solution getBestSolution() {
+        return bestSolution;
+    }
+
+    private void cancelStrategies() {
+        for (OptimizationSolver strategy : strategies) {
+            strategy.cancel();
+        }
+    }
+
+    /**
+     * The strategies are quiet as well.
+     */
+    @Override
+    public OptimizationSolver setQuiet(boolean quiet) {
+
+        super.setQuiet(quiet);
+
+        for (OptimizationSolver strategy : strategies) {
+            strategy.setQuiet(quiet);
+        }
+
+        return this;
+    }
+
+    @Override
+    public void cancel() {
+        super.cancel();
+        cancelStrategies();
+    }
+
+    @Override
+    public void end() {
+        for (OptimizationSolver strategy : strategies) {
+            strategy.end();
+        }
+    }
+}
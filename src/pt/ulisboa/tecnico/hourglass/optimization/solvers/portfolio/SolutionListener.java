@@ -0,0 +1,18 @@
+package pt.ulisboa.tecnico.hourglass.optimization.solvers.portfolio;
+
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.OptimizationSolver;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.util.Solution;
+
+/**
+ * Created by Pedro Joaquim.
+ */
+public interface SolutionListener {
+
+    /**
+     * Called with the first solution found and then with every strictly cheaper one, including the incumbents of
+     * strategies still running. Calls are not concurrent but can come from the threads of the strategies.
+     *
+     * @param strategy the solver that found the solution
+     */
+    void onSolution(Solution solution, OptimizationSolver strategy);
+}
@@ -1,7 +1,5 @@
 package pt.ulisboa.tecnico.hourglass.optimization.solvers.util;
 
-import ilog.concert.IloIntVar;
-
 /**
  * Created by Pedro Joaquim.
  */
@@ -13,10 +11,14 @@ public class Machine<I> {
 
     private I[] assignmentVarsPerPartition;
 
-    public Machine(int id, int capacity, I[] assignmentVarsPerPartition) {
+    /* partition of each entry of assignmentVarsPerPartition */
+    private int[] partitionIndexes;
+
+    public Machine(int id, int capacity, I[] assignmentVarsPerPartition, int[] partitionIndexes) {
         this.id = id;
         this.capacity = capacity;
         this.assignmentVarsPerPartition = assignmentVarsPerPartition;
+        this.partitionIndexes = partitionIndexes;
     }
 
     public int getCapacity() {
@@ -27,6 +29,10 @@ public class Machine<I> {
         return assignmentVarsPerPartition;
     }
 
+    public int[] getPartitionIndexes() {
+        return partitionIndexes;
+    }
+
     public int getId() {
         return id;
     }
@@ -0,0 +1,114 @@
+package pt.ulisboa.tecnico.hourglass.optimization.solvers.util;
+
+import java.util.Arrays;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Partitions grouped by size, groups sorted by decreasing size and partitions of each group by index.
+ */
+public class PartitionGroups {
+
+    private int[] sizes;
+
+    private int[][] partitionsPerGroup;
+
+    public PartitionGroups(int[] partitionSize) {
+
+        int[] distinctSizes = distinctSizesDesc(partitionSize);
+
+        int[] numPartitionsPerGroup = new int[distinctSizes.length];
+
+        for (int size : partitionSize) {
+            numPartitionsPerGroup[indexOf(distinctSizes, size)]++;
+        }
+
+        this.sizes = distinctSizes;
+        this.partitionsPerGroup = new int[distinctSizes.length][];
+
+        for (int g = 0; g < distinctSizes.length; g++) {
+            partitionsPerGroup[g] = new int[numPartitionsPerGroup[g]];
+        }
+
+        int[] nextIndex = new int[distinctSizes.length];
+
+        for (int p = 0; p < partitionSize.length; p++) {
+            int g = indexOf(distinctSizes, partitionSize[p]);
+            partitionsPerGroup[g][nextIndex[g]++] = p;
+        }
+    }
+
+    public int getNumGroups() {
+        return sizes.length;
+    }
+
+    public int[] getSizes() {
+        return sizes;
+    }
+
+    public int getSize(int group) {
+        return sizes[group];
+    }
+
+    public int getNumPartitions(int group) {
+        return partitionsPerGroup[group].length;
+    }
+
+    public int[] getPartitions(int group) {
+        return partitionsPerGroup[group];
+    }
+
+    public int[] getNumPartitionsPerGroup() {
+
+        int[] result = new int[sizes.length];
+
+        for (int g = 0; g < sizes.length; g++) {
+            result[g] = partitionsPerGroup[g].length;
+        }
+
+        return result;
+    }
+
+    private static int[] distinctSizesDesc(int[] partitionSize) {
+
+        int[] sorted = partitionSize.clone();
+        Arrays.sort(sorted);
+
+        int numDistinct = 0;
+
+        for (int i = 0; i < sorted.length; i++) {
+            if(i == 0 || sorted[i] != sorted[i - 1]) numDistinct++;
+        }
+
+        int[] result = new int[numDistinct];
+        int next = numDistinct - 1;
+
+        for (int i = 0; i < sorted.length; i++) {
+            if(i == 0 || sorted[i] != sorted[i - 1]) result[next--] = sorted[i];
+        }
+
+        return result;
+    }
+
+    /* sizes are sorted in decreasing order */
+    private static int indexOf(int[] sizesDesc, int size) {
+
+        int low = 0;
+        int high = sizesDesc.length - 1;
+
+        while (low <= high) {
+
+            int mid = (low + high) >>> 1;
+
+            if(sizesDesc[mid] > size) {
+                low = mid + 1;
+            } else if(sizesDesc[mid] < size) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -1;
+    }
+}
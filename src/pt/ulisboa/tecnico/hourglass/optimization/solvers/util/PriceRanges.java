@@ -0,0 +1,82 @@
+package pt.ulisboa.tecnico.hourglass.optimization.solvers.util;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Price interval of every instance type over which a fleet configuration (number of machines used per type) stays
+ * optimal when only the price of that type changes. The region where a configuration is optimal is convex, so by
+ * the 100% rule it also stays optimal under simultaneous changes as long as the sum, over the types, of each price
+ * change relative to the allowed change in its direction does not exceed one.
+ */
+public class PriceRanges {
+
+    private final int[] basePrices;
+
+    private final int[] numMachinesPerType;
+
+    private final int[] minPrices;
+
+    private final int[] maxPrices;
+
+    public PriceRanges(int[] basePrices, int[] numMachinesPerType, int[] minPrices, int[] maxPrices) {
+        this.basePrices = basePrices;
+        this.numMachinesPerType = numMachinesPerType;
+        this.minPrices = minPrices;
+        this.maxPrices = maxPrices;
+    }
+
+    /**
+     * @return true if the configuration is still optimal for the given prices, so solving again can be skipped
+     */
+    public boolean contains(int[] pricesPerType) {
+
+        double usedFraction = 0;
+
+        for (int t = 0; t < basePrices.length; t++) {
+
+            long change = (long) pricesPerType[t] - basePrices[t];
+
+            if(change == 0) continue;
+
+            long allowedChange = change > 0 ? (long) maxPrices[t] - basePrices[t] : (long) basePrices[t] - minPrices[t];
+
+            if(allowedChange == 0) return false;
+
+            usedFraction += (double) Math.abs(change) / allowedChange;
+
+            if(usedFraction > 1) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the cost of the configuration for the given prices
+     */
+    public long getCost(int[] pricesPerType) {
+
+        long result = 0;
+
+        for (int t = 0; t < numMachinesPerType.length; t++) {
+            result += (long) numMachinesPerType[t] * pricesPerType[t];
+        }
+
+        return result;
+    }
+
+    public int getBasePrice(int instanceType) {
+        return basePrices[instanceType];
+    }
+
+    public int getNumMachines(int instanceType) {
+        return numMachinesPerType[instanceType];
+    }
+
+    public int getMinPrice(int instanceType) {
+        return minPrices[instanceType];
+    }
+
+    public int getMaxPrice(int instanceType) {
+        return maxPrices[instanceType];
+    }
+}
@@ -0,0 +1,52 @@
+package pt.ulisboa.tecnico.hourglass.optimization.solvers.util;
+
+/**
+ * Created by Pedro Joaquim.
+ */
+public class Solution {
+
+    public static final int UNASSIGNED = -1;
+
+    private int cost;
+
+    private boolean[] machineUsage;
+
+    private int[] partitionAssignment;
+
+    public Solution(int cost, boolean[] machineUsage, int[] partitionAssignment) {
+        this.cost = cost;
+        this.machineUsage = machineUsage;
+        this.partitionAssignment = partitionAssignment;
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    public boolean[] getMachineUsage() {
+        return machineUsage;
+    }
+
+    public int[] getPartitionAssignment() {
+        return partitionAssignment;
+    }
+
+    public boolean isMachineUsed(int machineID) {
+        return machineUsage[machineID];
+    }
+
+    public int getAssignedMachine(int partitionID) {
+        return partitionAssignment[partitionID];
+    }
+
+    public int getNumMachinesUsed() {
+
+        int result = 0;
+
+        for (boolean used : machineUsage) {
+            if(used) result++;
+        }
+
+        return result;
+    }
+}
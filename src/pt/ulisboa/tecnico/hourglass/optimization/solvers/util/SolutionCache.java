@@ -0,0 +1,210 @@
+package pt.ulisboa.tecnico.hourglass.optimization.solvers.util;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Bounded LRU cache of solutions shared by solvers. Instances are keyed by the solver class, the histogram of
+ * partition sizes and the machine costs, capacities and instances per type, so an instance that only differs in
+ * the order of its partitions hits the solution of another one, partitions of the same size being interchangeable.
+ */
+public class SolutionCache {
+
+    private final int maxSize;
+
+    private final Map<Fingerprint, CachedSolution> entries;
+
+    private long hits;
+
+    private long misses;
+
+    public SolutionCache(int maxSize) {
+
+        this.maxSize = maxSize;
+
+        this.entries = new LinkedHashMap<Fingerprint, CachedSolution>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Fingerprint, CachedSolution> eldest) {
+                return size() > SolutionCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return the cached solution mapped onto the partitions of the given instance, or null on a miss
+     */
+    public Solution get(Class<?> solverClass, int[] partitionSize, int[] costPerMachine, int[] capacityPerMachine, int[] numInstancesPerType) {
+
+        int[] canonicalOrder = getCanonicalOrder(partitionSize);
+        Fingerprint fingerprint = new Fingerprint(solverClass, partitionSize, canonicalOrder, costPerMachine, capacityPerMachine, numInstancesPerType);
+
+        CachedSolution cached;
+
+        synchronized (this) {
+
+            cached = entries.get(fingerprint);
+
+            if(cached == null) {
+                misses++;
+                return null;
+            }
+
+            hits++;
+        }
+
+        int[] partitionAssignment = new int[partitionSize.length];
+
+        for (int i = 0; i < canonicalOrder.length; i++) {
+            partitionAssignment[canonicalOrder[i]] = cached.canonicalAssignment[i];
+        }
+
+        return new Solution(cached.cost, cached.machineUsage.clone(), partitionAssignment);
+    }
+
+    public void put(Class<?> solverClass, int[] partitionSize, int[] costPerMachine, int[] capacityPerMachine, int[] numInstancesPerType, Solution solution) {
+
+        int[] canonicalOrder = getCanonicalOrder(partitionSize);
+        Fingerprint fingerprint = new Fingerprint(solverClass, partitionSize, canonicalOrder, costPerMachine, capacityPerMachine, numInstancesPerType);
+
+        int[] canonicalAssignment = new int[partitionSize.length];
+
+        for (int i = 0; i < canonicalOrder.length; i++) {
+            canonicalAssignment[i] = solution.getAssignedMachine(canonicalOrder[i]);
+        }
+
+        CachedSolution cached = new CachedSolution(solution.getCost(), solution.getMachineUsage().clone(), canonicalAssignment);
+
+        synchronized (this) {
+            entries.put(fingerprint, cached);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Partitions sorted by size and then by index, key = (size << 32) | partition.
+     */
+    private static int[] getCanonicalOrder(int[] partitionSize) {
+
+        long[] keys = new long[partitionSize.length];
+
+        for (int p = 0; p < partitionSize.length; p++) {
+            keys[p] = ((long) partitionSize[p] << 32) | p;
+        }
+
+        Arrays.sort(keys);
+
+        int[] result = new int[keys.length];
+
+        for (int i = 0; i < keys.length; i++) {
+            result[i] = (int) keys[i];
+        }
+
+        return result;
+    }
+
+    private static class Fingerprint {
+
+        private final Class<?> solverClass;
+
+        /* pairs of (size, number of partitions) by increasing size */
+        private final int[] sizeHistogram;
+
+        private final int[] costPerMachine;
+
+        private final int[] capacityPerMachine;
+
+        private final int[] numInstancesPerType;
+
+        private final int hash;
+
+        Fingerprint(Class<?> solverClass, int[] partitionSize, int[] canonicalOrder, int[] costPerMachine, int[] capacityPerMachine, int[] numInstancesPerType) {
+
+            this.solverClass = solverClass;
+            this.sizeHistogram = createSizeHistogram(partitionSize, canonicalOrder);
+            this.costPerMachine = costPerMachine.clone();
+            this.capacityPerMachine = capacityPerMachine.clone();
+            this.numInstancesPerType = numInstancesPerType.clone();
+
+            int result = solverClass.hashCode();
+            result = 31 * result + Arrays.hashCode(sizeHistogram);
+            result = 31 * result + Arrays.hashCode(this.costPerMachine);
+            result = 31 * result + Arrays.hashCode(this.capacityPerMachine);
+            result = 31 * result + Arrays.hashCode(this.numInstancesPerType);
+
+            this.hash = result;
+        }
+
+        private static int[] createSizeHistogram(int[] partitionSize, int[] canonicalOrder) {
+
+            int[] result = new int[2 * canonicalOrder.length];
+            int length = 0;
+
+            for (int p : canonicalOrder) {
+
+                if(length == 0 || result[length - 2] != partitionSize[p]) {
+                    result[length++] = partitionSize[p];
+                    result[length++] = 0;
+                }
+
+                result[length - 1]++;
+            }
+
+            return Arrays.copyOf(result, length);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+
+            if(this == o) return true;
+            if(!(o instanceof Fingerprint)) return false;
+
+            Fingerprint other = (Fingerprint) o;
+
+            return hash == other.hash
+                    && solverClass == other.solverClass
+                    && Arrays.equals(sizeHistogram, other.sizeHistogram)
+                    && Arrays.equals(costPerMachine, other.costPerMachine)
+                    && Arrays.equals(capacityPerMachine, other.capacityPerMachine)
+                    && Arrays.equals(numInstancesPerType, other.numInstancesPerType);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class CachedSolution {
+
+        private final int cost;
+
+        private final boolean[] machineUsage;
+
+        /* machine of each partition in canonical order */
+        private final int[] canonicalAssignment;
+
+        CachedSolution(int cost, boolean[] machineUsage, int[] canonicalAssignment) {
+            this.cost = cost;
+            this.machineUsage = machineUsage;
+            this.canonicalAssignment = canonicalAssignment;
+        }
+    }
+}
@@ -5,6 +5,9 @@ package pt.ulisboa.tecnico.hourglass.optimization.util;
  */
 public class DataPoint {
 
+    /* prices are handled in fixed point with 4 decimal places */
+    public static final int PRICE_SCALE = 10000;
+
     private long timestamp;
 
     private double price;
@@ -24,6 +27,6 @@ public class DataPoint {
     }
 
     public int getPriceInt(){
-        return  (int) (price * 10000);
+        return  (int) (price * PRICE_SCALE);
     }
 }
@@ -0,0 +1,123 @@
+package pt.ulisboa.tecnico.hourglass.optimization.util;
+
+import java.util.Arrays;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Price series of every instance type, indexed by instance type, looked up at the same moment.
+ */
+public class PriceHistory {
+
+    private final PriceSeries[] seriesPerType;
+
+    public PriceHistory(PriceSeries[] seriesPerType) {
+        this.seriesPerType = seriesPerType;
+    }
+
+    public int getNumInstanceTypes() {
+        return seriesPerType.length;
+    }
+
+    public PriceSeries getSeries(int instanceType) {
+        return seriesPerType[instanceType];
+    }
+
+    /**
+     * @return the first moment every instance type has a price
+     */
+    public long getFirstTimestamp() {
+
+        long result = Long.MIN_VALUE;
+
+        for (PriceSeries series : seriesPerType) {
+            result = Math.max(result, series.getFirstTimestamp());
+        }
+
+        return result;
+    }
+
+    public long getLastTimestamp() {
+
+        long result = Long.MIN_VALUE;
+
+        for (PriceSeries series : seriesPerType) {
+            result = Math.max(result, series.getLastTimestamp());
+        }
+
+        return result;
+    }
+
+    public int[] getPricesAt(long timestamp) {
+        return getPricesAt(timestamp, new int[seriesPerType.length]);
+    }
+
+    /**
+     * Fills the price in effect at the timestamp of every instance type (PriceSeries.NO_PRICE before the first
+     * data point of a type).
+     */
+    public int[] getPricesAt(long timestamp, int[] result) {
+
+        for (int t = 0; t < seriesPerType.length; t++) {
+            result[t] = seriesPerType[t].getPriceAt(timestamp);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the distinct timestamps in (fromTimestamp, toTimestamp) at which the price of some instance type
+     * changes, in ascending order
+     */
+    public long[] getChangeTimestamps(long fromTimestamp, long toTimestamp) {
+
+        int[] next = new int[seriesPerType.length];
+        int[] lastPrice = new int[seriesPerType.length];
+
+        for (int t = 0; t < seriesPerType.length; t++) {
+
+            int index = seriesPerType[t].indexAt(fromTimestamp);
+
+            lastPrice[t] = index < 0 ? PriceSeries.NO_PRICE : seriesPerType[t].getPrice(index);
+            next[t] = index + 1;
+        }
+
+        long[] result = new long[16];
+        int size = 0;
+
+        //merge of the series, one timestamp at a time
+        while (true) {
+
+            long timestamp = Long.MAX_VALUE;
+
+            for (int t = 0; t < seriesPerType.length; t++) {
+                if(next[t] < seriesPerType[t].size()) timestamp = Math.min(timestamp, seriesPerType[t].getTimestamp(next[t]));
+            }
+
+            if(timestamp >= toTimestamp) break;
+
+            boolean changed = false;
+
+            for (int t = 0; t < seriesPerType.length; t++) {
+
+                PriceSeries series = seriesPerType[t];
+
+                while (next[t] < series.size() && series.getTimestamp(next[t]) == timestamp) {
+                    changed |= series.getPrice(next[t]) != lastPrice[t];
+                    lastPrice[t] = series.getPrice(next[t]);
+                    next[t]++;
+                }
+            }
+
+            if(!changed) continue;
+
+            if(size == result.length) {
+                result = Arrays.copyOf(result, size * 2);
+            }
+
+            result[size++] = timestamp;
+        }
+
+        return Arrays.copyOf(result, size);
+    }
+}
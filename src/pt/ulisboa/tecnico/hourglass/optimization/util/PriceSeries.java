@@ -0,0 +1,165 @@
+package pt.ulisboa.tecnico.hourglass.optimization.util;
+
+import java.util.Arrays;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Spot price history of one instance type stored in columns: timestamps in epoch millis and prices in fixed point
+ * (see {@link DataPoint#PRICE_SCALE}).
+ *
+ * Time lookups require the series sorted by timestamp (see {@link #sortByTimestamp()}) and follow step function
+ * semantics: the price at a given time is the one of the last data point at or before it.
+ */
+public class PriceSeries {
+
+    /* price before the first data point of a series */
+    public static final int NO_PRICE = -1;
+
+    public interface DataPointConsumer {
+        void accept(long timestamp, int price);
+    }
+
+    private final long[] timestamps;
+
+    private final int[] prices;
+
+    private final int size;
+
+    public PriceSeries(long[] timestamps, int[] prices, int size) {
+        this.timestamps = timestamps;
+        this.prices = prices;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public int getPrice(int index) {
+        return prices[index];
+    }
+
+    public DataPoint getDataPoint(int index) {
+        return new DataPoint(timestamps[index], (double) prices[index] / DataPoint.PRICE_SCALE);
+    }
+
+    public int getMaxPrice() {
+
+        int result = NO_PRICE;
+
+        for (int i = 0; i < size; i++) {
+            result = Math.max(result, prices[i]);
+        }
+
+        return result;
+    }
+
+    public long getFirstTimestamp() {
+        return timestamps[0];
+    }
+
+    public long getLastTimestamp() {
+        return timestamps[size - 1];
+    }
+
+    /**
+     * @return the index of the last data point at or before the timestamp, -1 if there is none
+     */
+    public int indexAt(long timestamp) {
+
+        int low = 0;
+        int high = size - 1;
+
+        while (low <= high) {
+
+            int mid = (low + high) >>> 1;
+
+            if(timestamps[mid] <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return high;
+    }
+
+    /**
+     * @return the price in effect at the timestamp, or NO_PRICE before the first data point
+     */
+    public int getPriceAt(long timestamp) {
+
+        int index = indexAt(timestamp);
+
+        return index < 0 ? NO_PRICE : prices[index];
+    }
+
+    public DataPoint getDataPointAt(long timestamp) {
+
+        int index = indexAt(timestamp);
+
+        return index < 0 ? null : getDataPoint(index);
+    }
+
+    /**
+     * Visits the data point in effect at fromTimestamp, if any, followed by every data point in
+     * (fromTimestamp, toTimestamp).
+     */
+    public void forEachInRange(long fromTimestamp, long toTimestamp, DataPointConsumer consumer) {
+
+        for (int i = Math.max(indexAt(fromTimestamp), 0); i < size && timestamps[i] < toTimestamp; i++) {
+            consumer.accept(timestamps[i], prices[i]);
+        }
+    }
+
+    /**
+     * @return this series if it is already sorted, otherwise a sorted copy. Data points with the same timestamp
+     * keep their relative order.
+     */
+    public PriceSeries sortByTimestamp() {
+
+        boolean ascending = true;
+        boolean descending = true;
+
+        for (int i = 1; i < size; i++) {
+            ascending &= timestamps[i - 1] <= timestamps[i];
+            descending &= timestamps[i - 1] > timestamps[i];
+        }
+
+        if(ascending) return this;
+
+        long[] sortedTimestamps = new long[size];
+        int[] sortedPrices = new int[size];
+
+        if(descending) {
+
+            //the usual order of the history files, most recent first
+            for (int i = 0; i < size; i++) {
+                sortedTimestamps[i] = timestamps[size - 1 - i];
+                sortedPrices[i] = prices[size - 1 - i];
+            }
+
+        } else {
+
+            Integer[] order = new Integer[size];
+
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+
+            Arrays.sort(order, (i1, i2) -> Long.compare(timestamps[i1], timestamps[i2]));
+
+            for (int i = 0; i < size; i++) {
+                sortedTimestamps[i] = timestamps[order[i]];
+                sortedPrices[i] = prices[order[i]];
+            }
+        }
+
+        return new PriceSeries(sortedTimestamps, sortedPrices, size);
+    }
+}
@@ -0,0 +1,126 @@
+package pt.ulisboa.tecnico.hourglass.optimization.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Binary snapshot of a parsed price history file, stored next to it. Loading one is a single read of the file and
+ * two bulk copies into the columns of the series, with no parsing. The header keeps the length and modification
+ * time of the source file, a snapshot whose source changed being ignored.
+ *
+ * Layout (little endian): magic, version, source length, source modification time (millis), number of data
+ * points, padding, then the timestamps column followed by the prices column.
+ */
+class PriceSnapshot {
+
+    private static final String EXTENSION = ".snapshot";
+
+    private static final int MAGIC = 0x48475053; //HGPS
+
+    private static final int VERSION = 2;
+
+    /* keeps the timestamps column 8 byte aligned */
+    private static final int HEADER_SIZE = 32;
+
+    static PriceSeries read(Path source) throws IOException {
+
+        BasicFileAttributes sourceAttributes = Files.readAttributes(source, BasicFileAttributes.class);
+
+        try (FileChannel channel = FileChannel.open(getSnapshotPath(source), StandardOpenOption.READ)) {
+
+            if(channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) return null;
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+
+            while (buffer.hasRemaining()) {
+                if(channel.read(buffer) < 0) return null;
+            }
+
+            buffer.flip();
+
+            if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return null;
+
+            if(buffer.getLong() != sourceAttributes.size() || buffer.getLong() != sourceAttributes.lastModifiedTime().toMillis()) return null;
+
+            int size = buffer.getInt();
+
+            if(size < 0 || channel.size() != HEADER_SIZE + size * 12L) return null;
+
+            long[] timestamps = new long[size];
+            int[] prices = new int[size];
+
+            buffer.position(HEADER_SIZE);
+            buffer.asLongBuffer().get(timestamps);
+
+            buffer.position(HEADER_SIZE + size * 8);
+            buffer.asIntBuffer().get(prices);
+
+            return new PriceSeries(timestamps, prices, size);
+
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Written to a temporary file first, so a concurrent reader never sees a partial snapshot.
+     *
+     * @param sourceAttributes attributes of the source file read before parsing it
+     */
+    static void write(Path source, BasicFileAttributes sourceAttributes, PriceSeries series) throws IOException {
+
+        Path snapshot = getSnapshotPath(source);
+        Path tempFile = Files.createTempFile(snapshot.toAbsolutePath().getParent(), "prices-", ".tmp");
+
+        try {
+
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+
+                int size = series.size();
+
+                ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + size * 12).order(ByteOrder.LITTLE_ENDIAN);
+
+                buffer.putInt(MAGIC)
+                        .putInt(VERSION)
+                        .putLong(sourceAttributes.size())
+                        .putLong(sourceAttributes.lastModifiedTime().toMillis())
+                        .putInt(size);
+
+                buffer.position(HEADER_SIZE);
+
+                for (int i = 0; i < size; i++) {
+                    buffer.putLong(series.getTimestamp(i));
+                }
+
+                for (int i = 0; i < size; i++) {
+                    buffer.putInt(series.getPrice(i));
+                }
+
+                buffer.flip();
+
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+
+            Files.move(tempFile, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static Path getSnapshotPath(Path source) {
+        return source.resolveSibling(source.getFileName() + EXTENSION);
+    }
+}
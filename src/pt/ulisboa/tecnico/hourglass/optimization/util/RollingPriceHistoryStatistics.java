@@ -0,0 +1,64 @@
+package pt.ulisboa.tecnico.hourglass.optimization.util;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Rolling statistics of every instance type over the same time window, giving smoothed price vectors indexed by
+ * instance type (e.g. for OptimizationSolver.setCostPerInstanceType).
+ */
+public class RollingPriceHistoryStatistics {
+
+    private final RollingPriceStatistics[] statisticsPerType;
+
+    public RollingPriceHistoryStatistics(PriceHistory priceHistory, long windowMillis) {
+
+        this.statisticsPerType = new RollingPriceStatistics[priceHistory.getNumInstanceTypes()];
+
+        for (int t = 0; t < statisticsPerType.length; t++) {
+            statisticsPerType[t] = new RollingPriceStatistics(priceHistory.getSeries(t), windowMillis);
+        }
+    }
+
+    public RollingPriceStatistics getStatistics(int instanceType) {
+        return statisticsPerType[instanceType];
+    }
+
+    public void advanceTo(long timestamp) {
+        for (RollingPriceStatistics statistics : statisticsPerType) {
+            statistics.advanceTo(timestamp);
+        }
+    }
+
+    public int[] getMeanPrices() {
+
+        int[] result = new int[statisticsPerType.length];
+
+        for (int t = 0; t < result.length; t++) {
+            result[t] = statisticsPerType[t].getMean();
+        }
+
+        return result;
+    }
+
+    public int[] getMaxPrices() {
+
+        int[] result = new int[statisticsPerType.length];
+
+        for (int t = 0; t < result.length; t++) {
+            result[t] = statisticsPerType[t].getMax();
+        }
+
+        return result;
+    }
+
+    public int[] getPercentilePrices(double quantile) {
+
+        int[] result = new int[statisticsPerType.length];
+
+        for (int t = 0; t < result.length; t++) {
+            result[t] = statisticsPerType[t].getPercentile(quantile);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,256 @@
+package pt.ulisboa.tecnico.hourglass.optimization.util;
+
+import java.util.Arrays;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Sliding time window statistics over a price series sorted by timestamp. The data points are price changes, so
+ * every price is weighted by how long it was in effect in the window [time - windowMillis, time], the price in
+ * effect when the window starts counting from its start. A window before the first data point starts there.
+ *
+ * The window moves forward only, each data point being added and removed once. The durations between consecutive
+ * data points inside the window are fixed while they stay in it and are kept in a running sum for the mean and in
+ * a Fenwick tree over the distinct prices of the series for percentiles, the partial durations at both ends of
+ * the window being added on query. The maximum comes from a monotonic deque of series indexes.
+ */
+public class RollingPriceStatistics {
+
+    private final PriceSeries series;
+
+    private final long windowMillis;
+
+    /* distinct prices of the series in ascending order and the rank of every data point among them */
+    private final int[] distinctPrices;
+
+    private final int[] priceRanks;
+
+    /* Fenwick tree over price ranks, 1 based, of the fixed durations */
+    private final long[] rankDurations;
+
+    /* series indexes of decreasing prices, the maximum of the data points in the window at maxDeque[maxHead] */
+    private final int[] maxDeque;
+
+    private int maxHead;
+
+    private int maxTail;
+
+    /* the data points [head, tail) changed the price inside the window, the one at head - 1 sets it at its start */
+    private int head;
+
+    private int tail;
+
+    /* sum of price * duration of the data points [head, tail - 1), whose duration ends at the next data point */
+    private long fixedWeightedSum;
+
+    private long time;
+
+    public RollingPriceStatistics(PriceSeries series, long windowMillis) {
+
+        this.series = series;
+        this.windowMillis = windowMillis;
+
+        int size = series.size();
+
+        int[] prices = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            prices[i] = series.getPrice(i);
+        }
+
+        Arrays.sort(prices);
+
+        int numDistinct = 0;
+
+        for (int i = 0; i < size; i++) {
+            if(numDistinct == 0 || prices[numDistinct - 1] != prices[i]) prices[numDistinct++] = prices[i];
+        }
+
+        this.distinctPrices = Arrays.copyOf(prices, numDistinct);
+        this.priceRanks = new int[size];
+
+        for (int i = 0; i < size; i++) {
+            priceRanks[i] = Arrays.binarySearch(distinctPrices, series.getPrice(i)) + 1;
+        }
+
+        this.rankDurations = new long[numDistinct + 1];
+        this.maxDeque = new int[size];
+    }
+
+    /**
+     * Moves the window to end at the timestamp, which cannot be before the one of the previous call.
+     */
+    public void advanceTo(long timestamp) {
+
+        this.time = timestamp;
+
+        while (tail < series.size() && series.getTimestamp(tail) <= timestamp) {
+            add(tail++);
+        }
+
+        while (head < tail && series.getTimestamp(head) <= timestamp - windowMillis) {
+            remove(head++);
+        }
+    }
+
+    private void add(int index) {
+
+        //the previous last data point now has its whole duration in the window
+        if(index > head) {
+            addFixedDuration(index - 1, series.getTimestamp(index) - series.getTimestamp(index - 1));
+        }
+
+        int price = series.getPrice(index);
+
+        while (maxTail > maxHead && series.getPrice(maxDeque[maxTail - 1]) <= price) {
+            maxTail--;
+        }
+
+        maxDeque[maxTail++] = index;
+    }
+
+    private void remove(int index) {
+
+        //it becomes the data point that sets the price at the start of the window
+        if(index < tail - 1) {
+            addFixedDuration(index, series.getTimestamp(index) - series.getTimestamp(index + 1));
+        }
+
+        if(maxDeque[maxHead] == index) {
+            maxHead++;
+        }
+    }
+
+    /**
+     * @param duration negative to remove it
+     */
+    private void addFixedDuration(int index, long duration) {
+
+        fixedWeightedSum += series.getPrice(index) * duration;
+
+        for (int r = priceRanks[index]; r < rankDurations.length; r += r & -r) {
+            rankDurations[r] += duration;
+        }
+    }
+
+    /**
+     * @return the number of price changes in the window
+     */
+    public int getCount() {
+        return tail - head;
+    }
+
+    /**
+     * @return the mean price of the window weighted by time, rounded to the nearest fixed point unit
+     */
+    public int getMean() {
+
+        if(tail == head) {
+            return getPriceInEffect();
+        }
+
+        long startDuration = getStartDuration();
+        long endDuration = getEndDuration();
+
+        long totalDuration = startDuration + getFixedDuration() + endDuration;
+
+        if(totalDuration == 0) {
+            return series.getPrice(tail - 1);
+        }
+
+        long weightedSum = fixedWeightedSum + series.getPrice(tail - 1) * endDuration;
+
+        if(head > 0) {
+            weightedSum += series.getPrice(head - 1) * startDuration;
+        }
+
+        return (int) ((weightedSum + totalDuration / 2) / totalDuration);
+    }
+
+    /**
+     * @return the highest price in effect during the window
+     */
+    public int getMax() {
+
+        if(tail == head) {
+            return getPriceInEffect();
+        }
+
+        int result = series.getPrice(maxDeque[maxHead]);
+
+        return head > 0 ? Math.max(result, series.getPrice(head - 1)) : result;
+    }
+
+    /**
+     * @param quantile in [0, 1], e.g. 0.9 for the price not exceeded during 90% of the window
+     */
+    public int getPercentile(double quantile) {
+
+        if(tail == head) {
+            return getPriceInEffect();
+        }
+
+        long startDuration = getStartDuration();
+        long endDuration = getEndDuration();
+
+        long totalDuration = startDuration + getFixedDuration() + endDuration;
+
+        if(totalDuration == 0) {
+            return series.getPrice(tail - 1);
+        }
+
+        double target = quantile * totalDuration;
+
+        int startRank = head > 0 ? priceRanks[head - 1] : 0;
+        int endRank = priceRanks[tail - 1];
+
+        //lowest rank whose prices were in effect for at least the target duration
+        int low = 1;
+        int high = distinctPrices.length;
+
+        while (low < high) {
+
+            int rank = (low + high) >>> 1;
+
+            long duration = getFixedDurationUpTo(rank) + (startRank <= rank ? startDuration : 0) + (endRank <= rank ? endDuration : 0);
+
+            if(duration > 0 && duration >= target) {
+                high = rank;
+            } else {
+                low = rank + 1;
+            }
+        }
+
+        return distinctPrices[low - 1];
+    }
+
+    /**
+     * @return how long the price at the start of the window was in effect in it, 0 before the first data point
+     */
+    private long getStartDuration() {
+        return head > 0 ? series.getTimestamp(head) - (time - windowMillis) : 0;
+    }
+
+    private long getEndDuration() {
+        return time - series.getTimestamp(tail - 1);
+    }
+
+    private long getFixedDuration() {
+        return series.getTimestamp(tail - 1) - series.getTimestamp(head);
+    }
+
+    private long getFixedDurationUpTo(int rank) {
+
+        long result = 0;
+
+        for (int r = rank; r > 0; r -= r & -r) {
+            result += rankDurations[r];
+        }
+
+        return result;
+    }
+
+    private int getPriceInEffect() {
+        return tail == 0 ? PriceSeries.NO_PRICE : series.getPrice(tail - 1);
+    }
+}
@@ -1,88 +1,153 @@
 package pt.ulisboa.tecnico.hourglass.optimization.util;
 
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Scanner;
 
 /**
  * Created by Pedro Joaquim.
+ *
+ * The price history files are parsed once per process, in parallel, and the series shared by every caller. A
+ * binary snapshot of each parsed file is kept next to it and loaded instead while the file does not change. Series
+ * are sorted by timestamp.
  */
 public class SpotInstancesPriceReader {
 
+    public static final int CL = 0;
+    public static final int CXL = 1;
+    public static final int C2XL = 2;
+    public static final int C4XL = 3;
+    public static final int C8XL = 4;
+
     private static final String CL_PATH = "D:\\GitHub\\HourglassOptimizationProblem\\spot-prices-history\\c4-large-1month-us-east-1b.json";
     private static final String CXL_PATH = "D:\\GitHub\\HourglassOptimizationProblem\\spot-prices-history\\c4-xlarge-1month-us-east-1b.json";
     private static final String C2XL_PATH = "D:\\GitHub\\HourglassOptimizationProblem\\spot-prices-history\\c4-2xlarge-1month-us-east-1b.json";
     private static final String C4XL_PATH = "D:\\GitHub\\HourglassOptimizationProblem\\spot-prices-history\\c4-4xlarge-1month-us-east-1b.json";
     private static final String C8XL_PATH = "D:\\GitHub\\HourglassOptimizationProblem\\spot-prices-history\\c4-8xlarge-1month-us-east-1b.json";
 
-    private static String TIMESTAMP_ATTR = "Timestamp";
-    private static String PRICE_ATTR = "SpotPrice";
-    private static String MAIN_JSON_ATTR = "SpotPriceHistory";
+    /* indexed by instance type */
+    private static final String[] PATHS = new String[]{CL_PATH, CXL_PATH, C2XL_PATH, C4XL_PATH, C8XL_PATH};
+
+    private static volatile PriceSeries[] allSeries;
 
 
     public static List<DataPoint> readCLDatapoints(){
-        return parseJSON(new File(CL_PATH));
+        return readDatapoints(CL);
     }
 
     public static List<DataPoint> readCXLDatapoints(){
-        return parseJSON(new File(CXL_PATH));
+        return readDatapoints(CXL);
     }
 
     public static List<DataPoint> readC2XLDatapoints(){
-        return parseJSON(new File(C2XL_PATH));
+        return readDatapoints(C2XL);
     }
 
     public static List<DataPoint> readC4XLDatapoints(){
-        return parseJSON(new File(C4XL_PATH));
+        return readDatapoints(C4XL);
     }
 
     public static List<DataPoint> readC8XLDatapoints(){
-        return parseJSON(new File(C8XL_PATH));
+        return readDatapoints(C8XL);
     }
 
-    private static List<DataPoint> parseJSON(File jsonFile){
+    public static PriceSeries readSeries(int instanceType) throws IOException {
+        return readAllSeries()[instanceType];
+    }
 
-        /*
-        List<DataPoint> result = new ArrayList<DataPoint>();
+    public static PriceHistory readPriceHistory() throws IOException {
+        return new PriceHistory(readAllSeries());
+    }
 
-        try {
+    /**
+     * @return the price series of every instance type, indexed by instance type
+     */
+    public static PriceSeries[] readAllSeries() throws IOException {
 
-            String jsonContent = new Scanner(jsonFile).useDelimiter("\\Z").next();
+        PriceSeries[] result = allSeries;
 
-            JSONArray dataPointsArray = (JSONArray)  new JSONObject(jsonContent).get(MAIN_JSON_ATTR);
+        if(result == null) {
+            synchronized (SpotInstancesPriceReader.class) {
 
-            for (int i = 0 ; i < dataPointsArray.length(); i++) {
+                if(allSeries == null) {
+                    allSeries = parseAll();
+                }
 
-                JSONObject obj = dataPointsArray.getJSONObject(i);
+                result = allSeries;
+            }
+        }
 
-                long timestamp = getTimeStamp(obj.getString(TIMESTAMP_ATTR));
-                double price = obj.getDouble(PRICE_ATTR);
+        return result.clone();
+    }
 
-                result.add(new DataPoint(timestamp, price));
-            }
+    private static PriceSeries[] parseAll() throws IOException {
 
-        } catch (FileNotFoundException | ParseException e) {
-            e.printStackTrace();
+        try {
+            return Arrays.stream(PATHS).parallel().map(path -> {
+                try {
+                    return loadSeries(Paths.get(path));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(path, e);
+                }
+            }).toArray(PriceSeries[]::new);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+    }
+
+    /**
+     * Parses a spot price history file on every call, without the process cache or the snapshot.
+     */
+    public static PriceSeries parseSeries(Path jsonFile) throws IOException {
+        return SpotPriceHistoryParser.parse(jsonFile).sortByTimestamp();
+    }
+
+    private static PriceSeries loadSeries(Path jsonFile) throws IOException {
 
-        return result;*/
+        PriceSeries result = PriceSnapshot.read(jsonFile);
 
-        return null;
+        if(result != null) {
+            return result;
+        }
+
+        BasicFileAttributes attributes = Files.readAttributes(jsonFile, BasicFileAttributes.class);
+
+        result = parseSeries(jsonFile);
+
+        try {
+            PriceSnapshot.write(jsonFile, attributes, result);
+        } catch (IOException e) {
+            //the snapshot only speeds up the next start
+            System.out.println("[INFO] COULD NOT WRITE PRICE SNAPSHOT FOR " + jsonFile + ": " + e.getMessage());
+        }
+
+        return result;
     }
 
-    private static long getTimeStamp(String timestampStr) throws ParseException {
+    private static List<DataPoint> readDatapoints(int instanceType) {
 
-        DateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
-        Date date = formatter.parse(timestampStr);
+        PriceSeries series;
+
+        try {
+            series = readSeries(instanceType);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        List<DataPoint> result = new ArrayList<>(series.size());
+
+        for (int i = 0; i < series.size(); i++) {
+            result.add(series.getDataPoint(i));
+        }
 
-        return date.getTime();
+        return result;
     }
 
 }
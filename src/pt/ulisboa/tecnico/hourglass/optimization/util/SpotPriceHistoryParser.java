@@ -0,0 +1,431 @@
+package pt.ulisboa.tecnico.hourglass.optimization.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Streaming parser for the spot price history files ({"SpotPriceHistory": [{"Timestamp": ..., "SpotPrice": ...},
+ * ...]}). The file is read through a fixed buffer and the data points go straight into primitive columns, prices
+ * being parsed as decimals into fixed point and timestamps as UTC ISO-8601 dates. Other attributes are skipped.
+ */
+class SpotPriceHistoryParser {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int PRICE_DECIMALS = 4;
+
+    private static final byte[] MAIN_JSON_ATTR = "SpotPriceHistory".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TIMESTAMP_ATTR = "Timestamp".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PRICE_ATTR = "SpotPrice".getBytes(StandardCharsets.US_ASCII);
+
+    private final InputStream in;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private int position;
+
+    private int limit;
+
+    private long offset;
+
+    /* last string or number read */
+    private byte[] token = new byte[64];
+
+    private int tokenLength;
+
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+
+    private int[] prices = new int[INITIAL_CAPACITY];
+
+    private int size;
+
+    private SpotPriceHistoryParser(InputStream in) {
+        this.in = in;
+    }
+
+    static PriceSeries parse(Path jsonFile) throws IOException {
+
+        try (InputStream in = Files.newInputStream(jsonFile)) {
+            return new SpotPriceHistoryParser(in).parse();
+        }
+    }
+
+    private PriceSeries parse() throws IOException {
+
+        expect('{');
+
+        if(peek() == '}') {
+            next();
+        } else {
+            do {
+
+                readString();
+                expect(':');
+
+                if(tokenEquals(MAIN_JSON_ATTR)) {
+                    parseDataPoints();
+                } else {
+                    skipValue();
+                }
+
+            } while (nextSeparator('}'));
+        }
+
+        return new PriceSeries(timestamps, prices, size);
+    }
+
+    private void parseDataPoints() throws IOException {
+
+        expect('[');
+
+        if(peek() == ']') {
+            next();
+            return;
+        }
+
+        do {
+            parseDataPoint();
+        } while (nextSeparator(']'));
+    }
+
+    private void parseDataPoint() throws IOException {
+
+        long timestamp = 0;
+        int price = 0;
+        boolean hasTimestamp = false;
+        boolean hasPrice = false;
+
+        expect('{');
+
+        if(peek() == '}') {
+            next();
+        } else {
+            do {
+
+                readString();
+                expect(':');
+
+                if(tokenEquals(TIMESTAMP_ATTR)) {
+                    readString();
+                    timestamp = parseTimestamp();
+                    hasTimestamp = true;
+                } else if(tokenEquals(PRICE_ATTR)) {
+                    readScalar();
+                    price = parsePrice();
+                    hasPrice = true;
+                } else {
+                    skipValue();
+                }
+
+            } while (nextSeparator('}'));
+        }
+
+        if(!hasTimestamp || !hasPrice) {
+            throw error("DATA POINT WITHOUT TIMESTAMP OR PRICE");
+        }
+
+        if(size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            prices = Arrays.copyOf(prices, size * 2);
+        }
+
+        timestamps[size] = timestamp;
+        prices[size] = price;
+        size++;
+    }
+
+    /**
+     * @return true if there is another element, false if the closing char was found
+     */
+    private boolean nextSeparator(char closingChar) throws IOException {
+
+        int c = nextNonWhitespace();
+
+        if(c == ',') return true;
+        if(c == closingChar) return false;
+
+        throw error("EXPECTED ',' OR '" + closingChar + "'");
+    }
+
+    private void skipValue() throws IOException {
+
+        int c = peek();
+
+        if(c == '{' || c == '[') {
+
+            int depth = 0;
+
+            do {
+
+                c = nextNonWhitespace();
+
+                if(c == '"') {
+                    position--;
+                    readString();
+                } else if(c == '{' || c == '[') {
+                    depth++;
+                } else if(c == '}' || c == ']') {
+                    depth--;
+                }
+
+            } while (depth > 0);
+
+        } else {
+            readScalar();
+        }
+    }
+
+    /* reads a string or a literal (number, true, false, null) into the token */
+    private void readScalar() throws IOException {
+
+        if(peek() == '"') {
+            readString();
+            return;
+        }
+
+        tokenLength = 0;
+
+        while (true) {
+
+            int c = peekRaw();
+
+            if(c < 0 || c == ',' || c == '}' || c == ']' || isWhitespace(c)) break;
+
+            appendToken(next());
+        }
+
+        if(tokenLength == 0) {
+            throw error("EXPECTED A VALUE");
+        }
+    }
+
+    private void readString() throws IOException {
+
+        expect('"');
+
+        tokenLength = 0;
+
+        while (true) {
+
+            int c = next();
+
+            if(c == '"') return;
+
+            if(c == '\\') {
+
+                c = next();
+
+                if(c == 'u') {
+                    //only ASCII values matter here, other code points are kept as a placeholder
+                    for (int i = 0; i < 4; i++) next();
+                    c = '?';
+                }
+            }
+
+            appendToken(c);
+        }
+    }
+
+    private void appendToken(int c) {
+
+        if(tokenLength == token.length) {
+            token = Arrays.copyOf(token, tokenLength * 2);
+        }
+
+        token[tokenLength++] = (byte) c;
+    }
+
+    private boolean tokenEquals(byte[] value) {
+
+        if(tokenLength != value.length) return false;
+
+        for (int i = 0; i < tokenLength; i++) {
+            if(token[i] != value[i]) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Decimal price into fixed point, the digits beyond the fixed point precision being truncated.
+     */
+    private int parsePrice() throws IOException {
+
+        long result = 0;
+        int decimals = -1;
+
+        for (int i = 0; i < tokenLength; i++) {
+
+            int c = token[i];
+
+            if(c == '.' && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+
+            if(c < '0' || c > '9') {
+                throw error("MALFORMED PRICE");
+            }
+
+            if(decimals >= PRICE_DECIMALS) continue;
+
+            result = result * 10 + (c - '0');
+
+            if(decimals >= 0) decimals++;
+
+            if(result > Integer.MAX_VALUE) {
+                throw error("PRICE OUT OF RANGE");
+            }
+        }
+
+        for (int i = Math.max(decimals, 0); i < PRICE_DECIMALS; i++) {
+            result *= 10;
+        }
+
+        if(result > Integer.MAX_VALUE) {
+            throw error("PRICE OUT OF RANGE");
+        }
+
+        return (int) result;
+    }
+
+    /**
+     * yyyy-MM-ddTHH:mm:ss[.SSS](Z|+HH:mm|-HH:mm) into epoch millis.
+     */
+    private long parseTimestamp() throws IOException {
+
+        if(tokenLength < 20 || token[4] != '-' || token[7] != '-' || token[10] != 'T' || token[13] != ':' || token[16] != ':') {
+            throw error("MALFORMED TIMESTAMP");
+        }
+
+        int year = parseDigits(0, 4);
+        int month = parseDigits(5, 2);
+        int day = parseDigits(8, 2);
+        int hour = parseDigits(11, 2);
+        int minute = parseDigits(14, 2);
+        int second = parseDigits(17, 2);
+
+        int i = 19;
+        int millis = 0;
+
+        if(token[i] == '.') {
+
+            int scale = 100;
+
+            for (i++; i < tokenLength && token[i] >= '0' && token[i] <= '9'; i++) {
+                millis += (token[i] - '0') * scale;
+                scale /= 10;
+            }
+        }
+
+        long offsetMillis;
+
+        if(i == tokenLength - 1 && token[i] == 'Z') {
+            offsetMillis = 0;
+        } else if(i == tokenLength - 6 && (token[i] == '+' || token[i] == '-') && token[i + 3] == ':') {
+            offsetMillis = (parseDigits(i + 1, 2) * 60L + parseDigits(i + 4, 2)) * 60000L * (token[i] == '+' ? 1 : -1);
+        } else {
+            throw error("MALFORMED TIMESTAMP");
+        }
+
+        long seconds = ((daysFromCivil(year, month, day) * 24 + hour) * 60 + minute) * 60 + second;
+
+        return seconds * 1000 + millis - offsetMillis;
+    }
+
+    private int parseDigits(int from, int length) throws IOException {
+
+        int result = 0;
+
+        for (int i = from; i < from + length; i++) {
+
+            int c = token[i];
+
+            if(c < '0' || c > '9') {
+                throw error("MALFORMED TIMESTAMP");
+            }
+
+            result = result * 10 + (c - '0');
+        }
+
+        return result;
+    }
+
+    /* days since 1970-01-01 of a proleptic gregorian date */
+    private static long daysFromCivil(int year, int month, int day) {
+
+        year -= month <= 2 ? 1 : 0;
+
+        long era = Math.floorDiv(year, 400);
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private void expect(char expected) throws IOException {
+        if(nextNonWhitespace() != expected) {
+            throw error("EXPECTED '" + expected + "'");
+        }
+    }
+
+    private int peek() throws IOException {
+
+        int c = nextNonWhitespace();
+
+        position--;
+
+        return c;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+
+        int c;
+
+        do {
+            c = next();
+        } while (isWhitespace(c));
+
+        return c;
+    }
+
+    private int next() throws IOException {
+
+        if(peekRaw() < 0) {
+            throw error("UNEXPECTED END OF FILE");
+        }
+
+        return buffer[position++] & 0xFF;
+    }
+
+    private int peekRaw() throws IOException {
+
+        if(position == limit) {
+
+            offset += limit;
+            limit = Math.max(in.read(buffer), 0);
+            position = 0;
+
+            if(limit == 0) return -1;
+        }
+
+        return buffer[position] & 0xFF;
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " AT BYTE " + (offset + position));
+    }
+}
@@ -0,0 +1,129 @@
+package pt.ulisboa.tecnico.hourglass.optimization.writers;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Buffered ASCII writer over a byte channel. Numbers are encoded straight into the buffer and strings are
+ * copied char by char, so writing a model does not allocate. The channel is not closed by this writer.
+ */
+public class AsciiWriter implements Flushable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    /* enough for the digits and sign of Long.MIN_VALUE */
+    private static final int MAX_LONG_CHARS = 20;
+
+    private final WritableByteChannel channel;
+
+    private final byte[] buffer;
+
+    private final ByteBuffer byteBuffer;
+
+    private int position;
+
+    public AsciiWriter(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public AsciiWriter(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = new byte[Math.max(bufferSize, MAX_LONG_CHARS)];
+        this.byteBuffer = ByteBuffer.wrap(buffer);
+    }
+
+    public AsciiWriter write(char c) throws IOException {
+
+        if(position == buffer.length) {
+            flushBuffer();
+        }
+
+        buffer[position++] = (byte) c;
+
+        return this;
+    }
+
+    public AsciiWriter write(String str) throws IOException {
+
+        int length = str.length();
+
+        for (int i = 0; i < length; i++) {
+
+            if(position == buffer.length) {
+                flushBuffer();
+            }
+
+            buffer[position++] = (byte) str.charAt(i);
+        }
+
+        return this;
+    }
+
+    public AsciiWriter write(long value) throws IOException {
+
+        if(buffer.length - position < MAX_LONG_CHARS) {
+            flushBuffer();
+        }
+
+        if(value == Long.MIN_VALUE) {
+            return write(Long.toString(value));
+        }
+
+        if(value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+
+        int numDigits = numDigits(value);
+        int end = position + numDigits;
+
+        for (int i = end - 1; i >= position; i--) {
+            buffer[i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+
+        position = end;
+
+        return this;
+    }
+
+    /**
+     * Writes a variable name, e.g. x42.
+     */
+    public AsciiWriter writeVar(long varID) throws IOException {
+        return write('x').write(varID);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    private void flushBuffer() throws IOException {
+
+        byteBuffer.clear();
+        byteBuffer.limit(position);
+
+        while (byteBuffer.hasRemaining()) {
+            channel.write(byteBuffer);
+        }
+
+        position = 0;
+    }
+
+    private static int numDigits(long value) {
+
+        int result = 1;
+
+        while (value >= 10) {
+            value /= 10;
+            result++;
+        }
+
+        return result;
+    }
+}
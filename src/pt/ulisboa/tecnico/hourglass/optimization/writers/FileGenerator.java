@@ -1,81 +1,375 @@
 package pt.ulisboa.tecnico.hourglass.optimization.writers;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Created by Pedro Joaquim.
+ *
+ * A model file is made of sections written in order, each one made of rows that can be rendered independently of
+ * each other (e.g. the assignment constraint of a partition), which allows rendering a file in parallel.
  */
 public abstract class FileGenerator {
 
-    public void createFile(int[] partitionsSize, int[] costPerMachine, int[] capacityPerMachine, List<int[]> zeroVars) {
+    /* number of chunks per worker a section is split into when writing in parallel */
+    private static final int CHUNKS_PER_WORKER = 4;
 
-        FileOutputStream outputStream = null;
-        File outFile = new File(getOutputFilePath(partitionsSize.length));
-        PrintWriter writer = null;
+    private static final int GZIP_BUFFER_SIZE = 1 << 16;
+
+    public enum Compression {
+
+        NONE(""), GZIP(".gz");
+
+        private final String extension;
+
+        Compression(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private boolean omitZeroVars;
+
+    private boolean parallel;
+
+    private Compression compression = Compression.NONE;
+
+    /* bit (m * numPartitions + p) set when the assignment of partition p to machine m is fixed to zero */
+    private long[] zeroVarsIndex;
+
+    protected int[] partitionsSize;
+
+    protected int[] costPerMachine;
+
+    protected int[] capacityPerMachine;
+
+    protected List<int[]> zeroVars;
+
+    protected int numPartitions;
+
+    protected int numMachines;
+
+    /**
+     * When set, the assignment variables fixed to zero are left out of every constraint and variable declaration
+     * instead of being written as extra "= 0" constraints. Variable ids are kept, so solutions read back map to the
+     * same (partition, machine) pairs.
+     */
+    public FileGenerator setOmitZeroVars(boolean omitZeroVars) {
+        this.omitZeroVars = omitZeroVars;
+        return this;
+    }
+
+    /**
+     * When set, sections are split in chunks of rows rendered on the common fork join pool into temporary files
+     * next to the output file, which are then concatenated in order.
+     */
+    public FileGenerator setParallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * Compresses the model while it is written, the compression extension being appended to the file name.
+     * Gzip uses the fastest level as generated models compress well anyway.
+     */
+    public FileGenerator setCompression(Compression compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    public void createFile(int[] partitionsSize, int[] costPerMachine, int[] capacityPerMachine, List<int[]> zeroVars) throws IOException {
+
+        File outFile = new File(getOutputFilePath(partitionsSize.length) + compression.getExtension());
+        Path tempDir = outFile.getAbsoluteFile().getParentFile().toPath();
+
+        try (FileChannel channel = FileChannel.open(outFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeModel(channel, tempDir, partitionsSize, costPerMachine, capacityPerMachine, zeroVars);
+        }
+    }
+
+    /**
+     * Writes the model to a channel (e.g. the stdin of a solver process) instead of a file. The channel is left open
+     * and chunks written in parallel go to the default temporary directory.
+     */
+    public void writeModel(WritableByteChannel channel, int[] partitionsSize, int[] costPerMachine, int[] capacityPerMachine, List<int[]> zeroVars) throws IOException {
+        writeModel(channel, getDefaultTempDir(), partitionsSize, costPerMachine, capacityPerMachine, zeroVars);
+    }
+
+    /**
+     * Writes the model to a stream, which is flushed but left open.
+     */
+    public void writeModel(OutputStream outputStream, int[] partitionsSize, int[] costPerMachine, int[] capacityPerMachine, List<int[]> zeroVars) throws IOException {
+
+        writeModel(Channels.newChannel(outputStream), partitionsSize, costPerMachine, capacityPerMachine, zeroVars);
+
+        outputStream.flush();
+    }
+
+    private void writeModel(WritableByteChannel channel, Path tempDir, int[] partitionsSize, int[] costPerMachine, int[] capacityPerMachine, List<int[]> zeroVars) throws IOException {
+
+        init(partitionsSize, costPerMachine, capacityPerMachine, zeroVars);
+
+        if(compression != Compression.GZIP) {
+            writeSections(channel, tempDir);
+            return;
+        }
+
+        //finished instead of closed, the target channel belongs to the caller
+        GzipOutputStream gzipStream = new GzipOutputStream(Channels.newOutputStream(channel));
+
+        try {
+            writeSections(Channels.newChannel(gzipStream), tempDir);
+            gzipStream.finish();
+        } finally {
+            gzipStream.end();
+        }
+    }
+
+    private void init(int[] partitionsSize, int[] costPerMachine, int[] capacityPerMachine, List<int[]> zeroVars) {
+
+        this.partitionsSize = partitionsSize;
+        this.costPerMachine = costPerMachine;
+        this.capacityPerMachine = capacityPerMachine;
+        this.zeroVars = zeroVars;
+        this.numPartitions = partitionsSize.length;
+        this.numMachines = costPerMachine.length;
+        this.zeroVarsIndex = null;
+
+        if(!omitZeroVars && !needsZeroVarsIndex()) return;
+
+        long numVars = (long) numPartitions * numMachines;
+
+        this.zeroVarsIndex = new long[(int) ((numVars + 63) >>> 6)];
+
+        for (int[] zeroVar : zeroVars) {
+            long bit = (long) zeroVar[0] * numPartitions + zeroVar[1];
+            zeroVarsIndex[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private void writeSections(WritableByteChannel channel, Path tempDir) throws IOException {
+
+        if(!parallel) {
+            writeSections(channel);
+            return;
+        }
+
+        try {
+            writeSectionsParallel(channel, tempDir);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while writing the model");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    private void writeSections(WritableByteChannel channel) throws IOException {
+
+        AsciiWriter writer = new AsciiWriter(channel);
+
+        for (int section = 0; section < getNumSections(); section++) {
+            writeSection(writer, section, 0, getNumRows(section));
+        }
+
+        writer.flush();
+    }
+
+    private void writeSectionsParallel(WritableByteChannel channel, Path tempDir) throws IOException, InterruptedException, ExecutionException {
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        int numChunksPerSection = pool.getParallelism() * CHUNKS_PER_WORKER;
+
+        List<Future<Path>> chunks = new ArrayList<>();
 
         try {
 
-            // if file doesnt exists, then create it
-            if (!outFile.exists()) {
-                outFile.createNewFile();
+            for (int section = 0; section < getNumSections(); section++) {
+
+                int numRows = getNumRows(section);
+                int rowsPerChunk = Math.max(1, (numRows + numChunksPerSection - 1) / numChunksPerSection);
+
+                //a section without rows may still have a header or a footer
+                for (int fromRow = 0; fromRow < numRows || fromRow == 0; fromRow += rowsPerChunk) {
+                    chunks.add(pool.submit(new ChunkWriter(tempDir, section, fromRow, Math.min(numRows, fromRow + rowsPerChunk))));
+                }
             }
 
-            outputStream = new FileOutputStream(outFile);
-            writer = new PrintWriter(outputStream);
+            for (Future<Path> chunk : chunks) {
+
+                Path chunkFile = chunk.get();
 
-            writeFileSuper(writer, partitionsSize, costPerMachine, capacityPerMachine, zeroVars);
+                transferChunk(chunkFile, channel);
 
+                Files.delete(chunkFile);
+            }
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.exit(0);
+        } finally {
+            deleteChunks(chunks);
         }
-        finally {
-            if(writer != null){
-                writer.close();
+    }
+
+    private void transferChunk(Path chunkFile, WritableByteChannel target) throws IOException {
+
+        try (FileChannel source = FileChannel.open(chunkFile, StandardOpenOption.READ)) {
+
+            long size = source.size();
+            long position = 0;
+
+            while (position < size) {
+                position += source.transferTo(position, size - position, target);
             }
+        }
+    }
 
-            if(outputStream != null){
-                try {
-                    outputStream.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+    private void deleteChunks(List<Future<Path>> chunks) throws IOException, InterruptedException {
+
+        for (Future<Path> chunk : chunks) {
+
+            //chunks already being written cannot be cancelled, wait for them to delete their files
+            if(chunk.cancel(false)) continue;
+
+            try {
+                Files.deleteIfExists(chunk.get());
+            } catch (ExecutionException | CancellationException e) {
+                //nothing was left behind by this chunk
             }
         }
+    }
+
+    private static Path getDefaultTempDir() {
+        return Paths.get(System.getProperty("java.io.tmpdir"));
+    }
+
+    /* gzip stream at the fastest level whose deflater can be released without closing the target */
+    private static class GzipOutputStream extends GZIPOutputStream {
 
+        GzipOutputStream(OutputStream out) throws IOException {
+            super(out, GZIP_BUFFER_SIZE);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+
+        void end() {
+            def.end();
+        }
     }
 
-    private void writeFileSuper(PrintWriter writer, int[] partitionsSize, int[] costPerMachine, int[] capacityPerMachine, List<int[]> zeroVars) {
+    private class ChunkWriter implements Callable<Path> {
 
-        int currentVarIndex = 1;
-        int numPartitions = partitionsSize.length;
-        int numMachines = costPerMachine.length;
+        private final Path tempDir;
 
-        int[] machineUsageVarsIndexes = new int[numMachines];
+        private final int section;
 
-        for (int i = 0; i < costPerMachine.length; i++) {
-            machineUsageVarsIndexes[i] = currentVarIndex++;
+        private final int fromRow;
+
+        private final int toRow;
+
+        ChunkWriter(Path tempDir, int section, int fromRow, int toRow) {
+            this.tempDir = tempDir;
+            this.section = section;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
         }
 
-        int[][] assignmentMatrixPerPartition = new int[numPartitions][numMachines];
-        int[][] assignmentMatrixPerMachine = new int[numMachines][numPartitions];
+        @Override
+        public Path call() throws IOException {
 
-        for (int p = 0; p < numPartitions; p++) {
-            for (int m = 0; m < numMachines; m++) {
-                assignmentMatrixPerPartition[p][m] = currentVarIndex++;
-                assignmentMatrixPerMachine[m][p] = assignmentMatrixPerPartition[p][m];
+            Path chunkFile = Files.createTempFile(tempDir, "section" + section + "-", ".tmp");
+
+            try (FileChannel channel = FileChannel.open(chunkFile, StandardOpenOption.WRITE)) {
+
+                AsciiWriter writer = new AsciiWriter(channel);
+
+                writeSection(writer, section, fromRow, toRow);
+
+                writer.flush();
+
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(chunkFile);
+                throw e;
             }
+
+            return chunkFile;
+        }
+    }
+
+    /**
+     * Machine usage variables are numbered first (1 to numMachines), followed by the assignment variables of each
+     * partition to every machine.
+     */
+    protected long getMachineUsageVar(int machine) {
+        return machine + 1;
+    }
+
+    protected long getAssignmentVar(int partition, int machine) {
+        return numMachines + 1 + (long) partition * numMachines + machine;
+    }
+
+    protected boolean isOmittingZeroVars() {
+        return omitZeroVars;
+    }
+
+    protected boolean isOmitted(int partition, int machine) {
+        return omitZeroVars && isZeroVar(partition, machine);
+    }
+
+    /**
+     * Only available when omitting zero vars or when {@link #needsZeroVarsIndex()} is set.
+     */
+    protected boolean isZeroVar(int partition, int machine) {
+
+        long bit = (long) machine * numPartitions + partition;
+
+        return (zeroVarsIndex[(int) (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Whether the generator looks up zero fixed variables by (partition, machine) even when they are not omitted.
+     */
+    protected boolean needsZeroVarsIndex() {
+        return false;
+    }
+
+    protected boolean hasAssignmentVars(int machine) {
+
+        for (int p = 0; p < numPartitions; p++) {
+            if(!isOmitted(p, machine)) return true;
         }
 
-        writeFile(writer, partitionsSize, costPerMachine, capacityPerMachine, zeroVars, machineUsageVarsIndexes, assignmentMatrixPerMachine, assignmentMatrixPerPartition);
+        return false;
     }
 
-    protected abstract void writeFile(PrintWriter writer, int[] partitionsSize, int[] costPerMachine, int[] capacityPerMachine, List<int[]> zeroVars, int[] machineUsageVarsIndexes, int[][] assignmentMatrixPerMachine, int[][] assignmentMatrixPerPartition);
+    protected abstract int getNumSections();
+
+    protected abstract int getNumRows(int section);
+
+    /**
+     * Writes rows [fromRow, toRow) of a section, the section header going with row 0 and its footer with the last
+     * row. Must not depend on the rows written before, as chunks of a section may be rendered concurrently.
+     */
+    protected abstract void writeSection(AsciiWriter writer, int section, int fromRow, int toRow) throws IOException;
 
     protected abstract String getOutputFilePath(int numPartitions);
 
@@ -1,122 +1,172 @@
 package pt.ulisboa.tecnico.hourglass.optimization.writers.lp;
 
+import pt.ulisboa.tecnico.hourglass.optimization.writers.AsciiWriter;
 import pt.ulisboa.tecnico.hourglass.optimization.writers.FileGenerator;
 
-import java.io.PrintWriter;
-import java.util.List;
+import java.io.IOException;
 
 /**
  * Created by Pedro Joaquim.
+ *
+ * Constraint names follow the position of the constraint in the full model, so they can be computed for any row
+ * and have gaps when zero fixed variables are omitted.
  */
 public class LPFileGenerator extends FileGenerator {
 
     private static final String OPB_FILE_PATH = "D:\\Projects\\open-wbo-master\\input\\";
 
-    @Override
-    protected void writeFile(PrintWriter writer, int[] partitionsSize, int[] costPerMachine, int[] capacityPerMachine, List<int[]> zeroVars, int[] machineUsageVarsIndexes, int[][] assignmentMatrixPerMachine, int[][] assignmentMatrixPerPartition) {
-
-        int numPartitions = partitionsSize.length;
-        int numMachines = costPerMachine.length;
-
-        StringBuilder sb = new StringBuilder();
+    private static final int OBJECTIVE = 0;
+    private static final int ASSIGNMENT_CONSTRAINTS = 1;
+    private static final int MACHINE_USAGE_CONSTRAINTS = 2;
+    private static final int CAPACITY_CONSTRAINTS = 3;
+    private static final int ZERO_VARS_CONSTRAINTS = 4;
+    private static final int BINARIES = 5;
 
-        writer.write("Minimize\n");
+    @Override
+    protected int getNumSections() {
+        return 6;
+    }
 
-        sb.append(" obj: ");
+    @Override
+    protected int getNumRows(int section) {
+        switch (section) {
+            case ASSIGNMENT_CONSTRAINTS:
+                return numPartitions;
+            case ZERO_VARS_CONSTRAINTS:
+                return isOmittingZeroVars() ? 0 : zeroVars.size();
+            case BINARIES:
+                //the machine usage variables and then the assignment variables of each machine
+                return numMachines + 1;
+            default:
+                return numMachines;
+        }
+    }
 
-        for (int i = 0; i < machineUsageVarsIndexes.length; i++) {
-            if(i != 0) sb.append("+ ");
-            sb.append(costPerMachine[i]).append(" x").append(machineUsageVarsIndexes[i]).append(" \n");
+    @Override
+    protected void writeSection(AsciiWriter writer, int section, int fromRow, int toRow) throws IOException {
+        switch (section) {
+            case OBJECTIVE:
+                writeObjective(writer, fromRow, toRow);
+                break;
+            case ASSIGNMENT_CONSTRAINTS:
+                writeAssignmentConstraints(writer, fromRow, toRow);
+                break;
+            case MACHINE_USAGE_CONSTRAINTS:
+                writeMachineUsageConstraints(writer, fromRow, toRow);
+                break;
+            case CAPACITY_CONSTRAINTS:
+                writeCapacityConstraints(writer, fromRow, toRow);
+                break;
+            case ZERO_VARS_CONSTRAINTS:
+                writeZeroVarsConstraints(writer, fromRow, toRow);
+                break;
+            case BINARIES:
+                writeBinaries(writer, fromRow, toRow);
+                break;
         }
+    }
 
-        writer.write(sb.toString());
+    private void writeObjective(AsciiWriter writer, int fromMachine, int toMachine) throws IOException {
 
-        writer.write("Subject To\n");
+        if(fromMachine == 0) {
+            writer.write("Minimize\n");
+            writer.write(" obj: ");
+        }
 
-        /*constraint 1: every partition has to be assigned to one and only one machine */
+        for (int i = fromMachine; i < toMachine; i++) {
+            if(i != 0) writer.write("+ ");
+            writer.write(costPerMachine[i]).write(' ').writeVar(getMachineUsageVar(i)).write(" \n");
+        }
 
-        int consID = 1;
+        if(toMachine == numMachines) {
+            writer.write("Subject To\n");
+        }
+    }
 
-        for (int p = 0; p < numPartitions; p++) {
+    /*constraint 1: every partition has to be assigned to one and only one machine */
+    private void writeAssignmentConstraints(AsciiWriter writer, int fromPartition, int toPartition) throws IOException {
 
-            sb = new StringBuilder();
+        for (int p = fromPartition; p < toPartition; p++) {
 
-            sb.append(" C").append(consID++).append(": ");
+            writer.write(" C").write(p + 1).write(": ");
 
             for (int m = 0; m < numMachines; m++) {
-                sb.append("+ 1 x").append(assignmentMatrixPerPartition[p][m]).append("\n");
+                if(isOmitted(p, m)) continue;
+                writer.write("+ 1 ").writeVar(getAssignmentVar(p, m)).write('\n');
             }
 
-            sb.append("= 1\n");
-
-            writer.write(sb.toString());
+            writer.write("= 1\n");
         }
+    }
 
-         /*constraint 2: if a partitions is assigned to a machine then that machine needs to be selected*/
-
-        for (int m = 0; m < numMachines; m++) {
-            for (int p = 0; p < numPartitions; p++) {
-                sb = new StringBuilder();
-                sb.append(" C").append(consID++).append(": ");
+    /*constraint 2: if a partitions is assigned to a machine then that machine needs to be selected*/
+    private void writeMachineUsageConstraints(AsciiWriter writer, int fromMachine, int toMachine) throws IOException {
 
-                sb.append("+ 1 x").append(assignmentMatrixPerMachine[m][p]).append(" - 1 x").append(machineUsageVarsIndexes[m]).append(" <= 0\n");
+        long firstConsID = numPartitions + 1;
 
-                writer.write(sb.toString());
+        for (int m = fromMachine; m < toMachine; m++) {
+            for (int p = 0; p < numPartitions; p++) {
+                if(isOmitted(p, m)) continue;
+                writer.write(" C").write(firstConsID + (long) m * numPartitions + p).write(": + 1 ").writeVar(getAssignmentVar(p, m)).write(" - 1 ").writeVar(getMachineUsageVar(m)).write(" <= 0\n");
             }
         }
+    }
+
+    /*constraint 3: prevent machine outburst capacity*/
+    private void writeCapacityConstraints(AsciiWriter writer, int fromMachine, int toMachine) throws IOException {
+
+        long firstConsID = numPartitions + (long) numMachines * numPartitions + 1;
 
-        /*constraint 3: prevent machine outburst capacity*/
+        for (int m = fromMachine; m < toMachine; m++) {
 
-        for (int m = 0; m < numMachines; m++) {
+            if(!hasAssignmentVars(m)) continue;
 
-            sb = new StringBuilder();
-            sb.append(" C").append(consID++).append(":");
+            writer.write(" C").write(firstConsID + m).write(':');
 
             for (int p = 0; p < numPartitions; p++) {
-                sb.append(" + ").append(partitionsSize[p]).append(" x").append(assignmentMatrixPerMachine[m][p]).append("\n");
+                if(isOmitted(p, m)) continue;
+                writer.write(" + ").write(partitionsSize[p]).write(' ').writeVar(getAssignmentVar(p, m)).write('\n');
             }
 
-            sb.append(" <= ").append(capacityPerMachine[m]).append("\n");
-
-            writer.write(sb.toString());
+            writer.write(" <= ").write(capacityPerMachine[m]).write('\n');
         }
+    }
 
-        /* add zero vars to break Symmetry*/
+    /* add zero vars to break Symmetry (left out of the file when omitting them)*/
+    private void writeZeroVarsConstraints(AsciiWriter writer, int fromZeroVar, int toZeroVar) throws IOException {
 
-        for (int i = 0; i < zeroVars.size(); i++) {
-            sb = new StringBuilder();
-            sb.append(" C").append(consID++).append(": ");
+        long firstConsID = numPartitions + (long) numMachines * numPartitions + numMachines + 1;
+
+        for (int i = fromZeroVar; i < toZeroVar; i++) {
 
             int machineIndex = zeroVars.get(i)[0];
             int partitionIndex = zeroVars.get(i)[1];
 
-            int varID = assignmentMatrixPerMachine[machineIndex][partitionIndex];
-
-            sb.append("+ 1 x").append(varID).append(" = 0\n");
-
-            writer.write(sb.toString());
+            writer.write(" C").write(firstConsID + i).write(": + 1 ").writeVar(getAssignmentVar(partitionIndex, machineIndex)).write(" = 0\n");
         }
+    }
 
-        writer.write("Binaries\n");
+    private void writeBinaries(AsciiWriter writer, int fromRow, int toRow) throws IOException {
 
-        sb = new StringBuilder();
+        if(fromRow == 0) {
 
-        for (int m = 0; m < machineUsageVarsIndexes.length; m++) {
-            sb.append(" x").append(machineUsageVarsIndexes[m]).append("\n");
+            writer.write("Binaries\n");
+
+            for (int m = 0; m < numMachines; m++) {
+                writer.write(' ').writeVar(getMachineUsageVar(m)).write('\n');
+            }
         }
 
-        for (int m = 0; m < numMachines; m++) {
+        for (int m = Math.max(0, fromRow - 1); m < toRow - 1; m++) {
             for (int p = 0; p < numPartitions; p++) {
-                sb.append(" x").append(assignmentMatrixPerMachine[m][p]).append("\n");
+                if(isOmitted(p, m)) continue;
+                writer.write(' ').writeVar(getAssignmentVar(p, m)).write('\n');
             }
         }
 
-        writer.write(sb.toString());
-
-        writer.write("End\n");
-
-        writer.flush();
-        writer.close();
+        if(toRow == getNumRows(BINARIES)) {
+            writer.write("End\n");
+        }
     }
 
     @Override
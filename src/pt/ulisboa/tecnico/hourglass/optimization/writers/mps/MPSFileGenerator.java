@@ -0,0 +1,222 @@
+package pt.ulisboa.tecnico.hourglass.optimization.writers.mps;
+
+import pt.ulisboa.tecnico.hourglass.optimization.writers.AsciiWriter;
+import pt.ulisboa.tecnico.hourglass.optimization.writers.FileGenerator;
+
+import java.io.IOException;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Free MPS writer. Rows are named as the constraints of the LP file and the variables fixed to zero are written as
+ * fixed bounds instead of extra rows.
+ */
+public class MPSFileGenerator extends FileGenerator {
+
+    private static final String MPS_FILE_PATH = "D:\\Projects\\open-wbo-master\\input\\";
+
+    private static final int ASSIGNMENT_ROWS = 0;
+    private static final int MACHINE_USAGE_ROWS = 1;
+    private static final int CAPACITY_ROWS = 2;
+    private static final int MACHINE_USAGE_COLUMNS = 3;
+    private static final int ASSIGNMENT_COLUMNS = 4;
+    private static final int RHS = 5;
+    private static final int BOUNDS = 6;
+
+    @Override
+    protected int getNumSections() {
+        return 7;
+    }
+
+    @Override
+    protected int getNumRows(int section) {
+        switch (section) {
+            case ASSIGNMENT_ROWS:
+            case ASSIGNMENT_COLUMNS:
+                return numPartitions;
+            case RHS:
+            case BOUNDS:
+                return numPartitions + numMachines;
+            default:
+                return numMachines;
+        }
+    }
+
+    @Override
+    protected boolean needsZeroVarsIndex() {
+        return true;
+    }
+
+    @Override
+    protected void writeSection(AsciiWriter writer, int section, int fromRow, int toRow) throws IOException {
+        switch (section) {
+            case ASSIGNMENT_ROWS:
+                writeAssignmentRows(writer, fromRow, toRow);
+                break;
+            case MACHINE_USAGE_ROWS:
+                writeMachineUsageRows(writer, fromRow, toRow);
+                break;
+            case CAPACITY_ROWS:
+                writeCapacityRows(writer, fromRow, toRow);
+                break;
+            case MACHINE_USAGE_COLUMNS:
+                writeMachineUsageColumns(writer, fromRow, toRow);
+                break;
+            case ASSIGNMENT_COLUMNS:
+                writeAssignmentColumns(writer, fromRow, toRow);
+                break;
+            case RHS:
+                writeRHS(writer, fromRow, toRow);
+                break;
+            case BOUNDS:
+                writeBounds(writer, fromRow, toRow);
+                break;
+        }
+    }
+
+    private long getAssignmentRow(int partition) {
+        return partition + 1;
+    }
+
+    private long getMachineUsageRow(int partition, int machine) {
+        return numPartitions + 1 + (long) machine * numPartitions + partition;
+    }
+
+    private long getCapacityRow(int machine) {
+        return numPartitions + (long) numMachines * numPartitions + 1 + machine;
+    }
+
+    /*constraint 1: every partition has to be assigned to one and only one machine */
+    private void writeAssignmentRows(AsciiWriter writer, int fromPartition, int toPartition) throws IOException {
+
+        if(fromPartition == 0) {
+            writer.write("NAME m").write(numPartitions).write('\n');
+            writer.write("ROWS\n");
+            writer.write(" N obj\n");
+        }
+
+        for (int p = fromPartition; p < toPartition; p++) {
+            writer.write(" E C").write(getAssignmentRow(p)).write('\n');
+        }
+    }
+
+    /*constraint 2: if a partitions is assigned to a machine then that machine needs to be selected*/
+    private void writeMachineUsageRows(AsciiWriter writer, int fromMachine, int toMachine) throws IOException {
+
+        for (int m = fromMachine; m < toMachine; m++) {
+            for (int p = 0; p < numPartitions; p++) {
+                if(isOmitted(p, m)) continue;
+                writer.write(" L C").write(getMachineUsageRow(p, m)).write('\n');
+            }
+        }
+    }
+
+    /*constraint 3: prevent machine outburst capacity*/
+    private void writeCapacityRows(AsciiWriter writer, int fromMachine, int toMachine) throws IOException {
+
+        for (int m = fromMachine; m < toMachine; m++) {
+            if(!hasAssignmentVars(m)) continue;
+            writer.write(" L C").write(getCapacityRow(m)).write('\n');
+        }
+    }
+
+    private void writeMachineUsageColumns(AsciiWriter writer, int fromMachine, int toMachine) throws IOException {
+
+        if(fromMachine == 0) {
+            writer.write("COLUMNS\n");
+            writer.write(" MARKER 'MARKER' 'INTORG'\n");
+        }
+
+        for (int m = fromMachine; m < toMachine; m++) {
+
+            long var = getMachineUsageVar(m);
+
+            writer.write(' ').writeVar(var).write(" obj ").write(costPerMachine[m]).write('\n');
+
+            for (int p = 0; p < numPartitions; p++) {
+                if(isOmitted(p, m)) continue;
+                writer.write(' ').writeVar(var).write(" C").write(getMachineUsageRow(p, m)).write(" -1\n");
+            }
+        }
+    }
+
+    private void writeAssignmentColumns(AsciiWriter writer, int fromPartition, int toPartition) throws IOException {
+
+        for (int p = fromPartition; p < toPartition; p++) {
+            for (int m = 0; m < numMachines; m++) {
+
+                if(isOmitted(p, m)) continue;
+
+                long var = getAssignmentVar(p, m);
+
+                writer.write(' ').writeVar(var).write(" C").write(getAssignmentRow(p)).write(" 1\n");
+                writer.write(' ').writeVar(var).write(" C").write(getMachineUsageRow(p, m)).write(" 1\n");
+                writer.write(' ').writeVar(var).write(" C").write(getCapacityRow(m)).write(' ').write(partitionsSize[p]).write('\n');
+            }
+        }
+
+        if(toPartition == numPartitions) {
+            writer.write(" MARKER 'MARKER' 'INTEND'\n");
+        }
+    }
+
+    /* rows [0, numPartitions) are the assignment constraints, the remaining ones the capacity constraints */
+    private void writeRHS(AsciiWriter writer, int fromRow, int toRow) throws IOException {
+
+        if(fromRow == 0) {
+            writer.write("RHS\n");
+        }
+
+        for (int row = fromRow; row < toRow; row++) {
+
+            if(row < numPartitions) {
+                writer.write(" RHS C").write(getAssignmentRow(row)).write(" 1\n");
+                continue;
+            }
+
+            int m = row - numPartitions;
+
+            if(!hasAssignmentVars(m)) continue;
+
+            writer.write(" RHS C").write(getCapacityRow(m)).write(' ').write(capacityPerMachine[m]).write('\n');
+        }
+    }
+
+    /* rows [0, numMachines) are the machine usage variables, the remaining ones the assignment variables of a partition */
+    private void writeBounds(AsciiWriter writer, int fromRow, int toRow) throws IOException {
+
+        if(fromRow == 0) {
+            writer.write("BOUNDS\n");
+        }
+
+        for (int row = fromRow; row < toRow; row++) {
+
+            if(row < numMachines) {
+                writer.write(" BV BND ").writeVar(getMachineUsageVar(row)).write('\n');
+                continue;
+            }
+
+            int p = row - numMachines;
+
+            for (int m = 0; m < numMachines; m++) {
+
+                if(isOmitted(p, m)) continue;
+
+                if(isZeroVar(p, m)) {
+                    writer.write(" FX BND ").writeVar(getAssignmentVar(p, m)).write(" 0\n");
+                } else {
+                    writer.write(" BV BND ").writeVar(getAssignmentVar(p, m)).write('\n');
+                }
+            }
+        }
+
+        if(toRow == getNumRows(BOUNDS)) {
+            writer.write("ENDATA\n");
+        }
+    }
+
+    @Override
+    protected String getOutputFilePath(int numPartitions) {
+        return  MPS_FILE_PATH + "m" + numPartitions + ".mps";
+    }
+}
@@ -1,9 +1,9 @@
 package pt.ulisboa.tecnico.hourglass.optimization.writers.opb;
 
+import pt.ulisboa.tecnico.hourglass.optimization.writers.AsciiWriter;
 import pt.ulisboa.tecnico.hourglass.optimization.writers.FileGenerator;
 
-import java.io.PrintWriter;
-import java.util.List;
+import java.io.IOException;
 
 /**
  * Created by Pedro Joaquim.
@@ -12,85 +12,117 @@ public class OPBFileGenerator extends FileGenerator{
 
     private static final String OPB_FILE_PATH = "D:\\Projects\\open-wbo-master\\input\\";
 
-    protected void writeFile(PrintWriter writer, int[] partitionsSize, int[] costPerMachine, int[] capacityPerMachine, List<int[]> zeroVars, int[] machineUsageVarsIndexes, int[][] assignmentMatrixPerMachine, int[][] assignmentMatrixPerPartition) {
+    private static final int OBJECTIVE = 0;
+    private static final int ASSIGNMENT_CONSTRAINTS = 1;
+    private static final int MACHINE_USAGE_CONSTRAINTS = 2;
+    private static final int CAPACITY_CONSTRAINTS = 3;
+    private static final int ZERO_VARS_CONSTRAINTS = 4;
 
-        int numPartitions = partitionsSize.length;
-        int numMachines = costPerMachine.length;
+    @Override
+    protected int getNumSections() {
+        return 5;
+    }
 
-        /* objective function */
+    @Override
+    protected int getNumRows(int section) {
+        switch (section) {
+            case ASSIGNMENT_CONSTRAINTS:
+                return numPartitions;
+            case ZERO_VARS_CONSTRAINTS:
+                return isOmittingZeroVars() ? 0 : zeroVars.size();
+            default:
+                return numMachines;
+        }
+    }
 
-        StringBuilder sb = new StringBuilder();
+    @Override
+    protected void writeSection(AsciiWriter writer, int section, int fromRow, int toRow) throws IOException {
+        switch (section) {
+            case OBJECTIVE:
+                writeObjective(writer, fromRow, toRow);
+                break;
+            case ASSIGNMENT_CONSTRAINTS:
+                writeAssignmentConstraints(writer, fromRow, toRow);
+                break;
+            case MACHINE_USAGE_CONSTRAINTS:
+                writeMachineUsageConstraints(writer, fromRow, toRow);
+                break;
+            case CAPACITY_CONSTRAINTS:
+                writeCapacityConstraints(writer, fromRow, toRow);
+                break;
+            case ZERO_VARS_CONSTRAINTS:
+                writeZeroVarsConstraints(writer, fromRow, toRow);
+                break;
+        }
+    }
 
-        sb.append("min: ");
+    /* objective function */
+    private void writeObjective(AsciiWriter writer, int fromMachine, int toMachine) throws IOException {
 
-        for (int i = 0; i < machineUsageVarsIndexes.length; i++) {
-            sb.append("+").append(costPerMachine[i]).append(" x").append(machineUsageVarsIndexes[i]).append(" ");
+        if(fromMachine == 0) {
+            writer.write("min: ");
         }
 
-        sb.append(";\n");
-
-        writer.write(sb.toString());
+        for (int i = fromMachine; i < toMachine; i++) {
+            writer.write('+').write(costPerMachine[i]).write(' ').writeVar(getMachineUsageVar(i)).write(' ');
+        }
 
-        /*constraint 1: every partition has to be assigned to one and only one machine */
+        if(toMachine == numMachines) {
+            writer.write(";\n");
+        }
+    }
 
-        for (int p = 0; p < numPartitions; p++) {
+    /*constraint 1: every partition has to be assigned to one and only one machine */
+    private void writeAssignmentConstraints(AsciiWriter writer, int fromPartition, int toPartition) throws IOException {
 
-            sb = new StringBuilder();
+        for (int p = fromPartition; p < toPartition; p++) {
 
             for (int m = 0; m < numMachines; m++) {
-                sb.append("+1 x").append(assignmentMatrixPerPartition[p][m]).append(" ");
+                if(isOmitted(p, m)) continue;
+                writer.write("+1 ").writeVar(getAssignmentVar(p, m)).write(' ');
             }
 
-            sb.append("= 1 ;\n");
-
-            writer.write(sb.toString());
+            writer.write("= 1 ;\n");
         }
+    }
 
-        /*constraint 2: if a partitions is assigned to a machine then that machine needs to be selected*/
+    /*constraint 2: if a partitions is assigned to a machine then that machine needs to be selected*/
+    private void writeMachineUsageConstraints(AsciiWriter writer, int fromMachine, int toMachine) throws IOException {
 
-        for (int m = 0; m < numMachines; m++) {
+        for (int m = fromMachine; m < toMachine; m++) {
             for (int p = 0; p < numPartitions; p++) {
-                sb = new StringBuilder();
-
-                sb.append("+1 x").append(assignmentMatrixPerMachine[m][p]).append(" -1 x").append(machineUsageVarsIndexes[m]).append(" <= 0 ;\n");
-
-                writer.write(sb.toString());
+                if(isOmitted(p, m)) continue;
+                writer.write("+1 ").writeVar(getAssignmentVar(p, m)).write(" -1 ").writeVar(getMachineUsageVar(m)).write(" <= 0 ;\n");
             }
         }
+    }
 
-        /*constraint 3: prevent machine outburst capacity*/
+    /*constraint 3: prevent machine outburst capacity*/
+    private void writeCapacityConstraints(AsciiWriter writer, int fromMachine, int toMachine) throws IOException {
 
-        for (int m = 0; m < numMachines; m++) {
+        for (int m = fromMachine; m < toMachine; m++) {
 
-            sb = new StringBuilder();
+            if(!hasAssignmentVars(m)) continue;
 
             for (int p = 0; p < numPartitions; p++) {
-                sb.append("+").append(partitionsSize[p]).append(" x").append(assignmentMatrixPerMachine[m][p]).append(" ");
+                if(isOmitted(p, m)) continue;
+                writer.write('+').write(partitionsSize[p]).write(' ').writeVar(getAssignmentVar(p, m)).write(' ');
             }
 
-            sb.append("<= ").append(capacityPerMachine[m]).append(" ;\n");
-
-            writer.write(sb.toString());
+            writer.write("<= ").write(capacityPerMachine[m]).write(" ;\n");
         }
+    }
 
+    /* add zero vars to break Symmetry (left out of the file when omitting them)*/
+    private void writeZeroVarsConstraints(AsciiWriter writer, int fromZeroVar, int toZeroVar) throws IOException {
 
-        /* add zero vars to break Symmetry*/
-
-        for (int i = 0; i < zeroVars.size(); i++) {
-            sb = new StringBuilder();
+        for (int i = fromZeroVar; i < toZeroVar; i++) {
 
             int machineIndex = zeroVars.get(i)[0];
             int partitionIndex = zeroVars.get(i)[1];
 
-            int varID = assignmentMatrixPerMachine[machineIndex][partitionIndex];
-
-            sb.append("+1 x").append(varID).append(" = 0 ;\n");
-
-            writer.write(sb.toString());
+            writer.write("+1 ").writeVar(getAssignmentVar(partitionIndex, machineIndex)).write(" = 0 ;\n");
         }
-
-        writer.flush();
-        writer.close();
     }
 
     @Override
@@ -0,0 +1,193 @@
+package pt.ulisboa.tecnico.hourglass.optimization.solvers.cplex;
+
+import org.junit.Test;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.OptimizationSolver;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.util.Solution;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Solves small instances with CPLEX, e.g. the re-optimization after a whole instance type is evicted, a
+ * reconfiguration or the price ranges of a solution.
+ */
+public class OptimizationSolverCPLEXTest {
+
+    private static final int[] CAPACITY_PER_TYPE = new int[]{1, 2, 4, 8, 16};
+
+    private static final int[] COST_PER_TYPE = new int[]{1000, 1900, 4100, 7900, 16500};
+
+    @Test
+    public void reoptimizeAfterEvictingAWholeType() throws Exception {
+
+        int[] partitionSize = new int[]{4, 4, 1, 1};
+        int[] numInstancesPerType = new int[]{1, 1, 1, 2, 1};
+
+        OptimizationSolver solver = createSolver(partitionSize, numInstancesPerType);
+
+        solver.solve();
+
+        //every machine of the type of the first partition
+        int type = getType(numInstancesPerType, solver.getSolution().getAssignedMachine(0));
+        int firstIndex = Arrays.stream(numInstancesPerType, 0, type).sum();
+
+        int[] evictedMachines = new int[numInstancesPerType[type]];
+
+        for (int i = 0; i < evictedMachines.length; i++) {
+            evictedMachines[i] = firstIndex + i;
+        }
+
+        Solution repaired = solver.repair(solver.getSolution(), evictedMachines);
+
+        Solution reoptimized = solver.reoptimize(repaired, evictedMachines, new OptimizationSolverCPLEX(), Runnable::run).join();
+
+        checkFeasible(reoptimized, partitionSize, numInstancesPerType);
+
+        for (int m : evictedMachines) {
+            assertFalse("EVICTED MACHINE " + m + " USED", reoptimized.isMachineUsed(m));
+        }
+
+        assertTrue(reoptimized.getCost() <= repaired.getCost());
+    }
+
+    @Test
+    public void reconfigurationConsolidatesOnAnotherUsedMachine() throws Exception {
+
+        //two machines of the same type in use, the symmetry ranges putting every partition on the first one
+        int[] partitionSize = new int[]{1, 1, 1};
+        int[] numInstancesPerType = new int[]{0, 0, 2, 0, 0};
+
+        OptimizationSolver solver = createSolver(partitionSize, numInstancesPerType)
+                .setCurrentAssignment(new int[]{1, 1, 0}, new int[]{100, 100, 100});
+
+        solver.solve();
+
+        Solution solution = solver.getSolution();
+
+        checkFeasible(solution, partitionSize, numInstancesPerType);
+
+        //moving the last partition is cheaper than moving the other two
+        assertFalse(solution.isMachineUsed(0));
+
+        for (int p = 0; p < partitionSize.length; p++) {
+            assertEquals(1, solution.getAssignedMachine(p));
+        }
+    }
+
+    @Test
+    public void priceRangesKeepTheLastSolve() throws Exception {
+
+        OptimizationSolver solver = createSolver(new int[]{4, 1, 1}, new int[]{1, 1, 1, 1, 1});
+
+        solver.solve();
+
+        Solution solution = solver.getSolution();
+        Map<String, Long> phaseTimes = solver.getPhaseTimes();
+        Map<String, Long> subPhaseTimes = solver.getSubPhaseTimes();
+
+        assertTrue(solver.isSolutionOptimal());
+
+        solver.calcPriceRanges(new int[]{5000, 5000, 10000, 20000, 40000});
+
+        assertSame(solution, solver.getSolution());
+        assertTrue(solver.isSolutionOptimal());
+        assertEquals(phaseTimes, solver.getPhaseTimes());
+        assertEquals(subPhaseTimes, solver.getSubPhaseTimes());
+    }
+
+    @Test
+    public void tooManyPatterns() throws Exception {
+
+        //a single large machine and many distinct sizes that fit it
+        int[] partitionSize = new int[128];
+
+        for (int p = 0; p < partitionSize.length; p++) {
+            partitionSize[p] = 1 + p / 4;
+        }
+
+        OptimizationSolver solver = new OptimizationSolverCPLEXPatterns()
+                .setPartitionSize(partitionSize)
+                .setCostPerMachine(new int[]{16500})
+                .setCapacityPerMachine(new int[]{64})
+                .setNumInstancesPerType(new int[]{0, 0, 0, 0, 1});
+
+        try {
+            solver.solve();
+            fail("SOLVED WITH MORE THAN " + OptimizationSolverCPLEXPatterns.MAX_PATTERNS_PER_TYPE + " PATTERNS");
+        } catch (TooManyPatternsException e) {
+            assertEquals(4, e.getInstanceType());
+        }
+    }
+
+    private static OptimizationSolver createSolver(int[] partitionSize, int[] numInstancesPerType) {
+
+        int numMachines = Arrays.stream(numInstancesPerType).sum();
+
+        int[] costPerMachine = new int[numMachines];
+        int[] capacityPerMachine = new int[numMachines];
+
+        for (int t = 0, m = 0; t < numInstancesPerType.length; t++) {
+            for (int i = 0; i < numInstancesPerType[t]; i++, m++) {
+                costPerMachine[m] = COST_PER_TYPE[t];
+                capacityPerMachine[m] = CAPACITY_PER_TYPE[t];
+            }
+        }
+
+        return new OptimizationSolverCPLEX()
+                .setPartitionSize(partitionSize)
+                .setCostPerMachine(costPerMachine)
+                .setCapacityPerMachine(capacityPerMachine)
+                .setNumInstancesPerType(numInstancesPerType);
+    }
+
+    private static int getType(int[] numInstancesPerType, int machineID) {
+
+        int type = 0;
+
+        for (int firstIndex = numInstancesPerType[0]; firstIndex <= machineID; firstIndex += numInstancesPerType[type]) {
+            type++;
+        }
+
+        return type;
+    }
+
+    private static void checkFeasible(Solution solution, int[] partitionSize, int[] numInstancesPerType) {
+
+        int[] load = new int[Arrays.stream(numInstancesPerType).sum()];
+        int[] capacityPerMachine = new int[load.length];
+        int cost = 0;
+
+        for (int t = 0, m = 0; t < numInstancesPerType.length; t++) {
+            for (int i = 0; i < numInstancesPerType[t]; i++, m++) {
+
+                capacityPerMachine[m] = CAPACITY_PER_TYPE[t];
+
+                if(solution.isMachineUsed(m)) cost += COST_PER_TYPE[t];
+            }
+        }
+
+        for (int p = 0; p < partitionSize.length; p++) {
+
+            int machine = solution.getAssignedMachine(p);
+
+            assertTrue("PARTITION " + p + " UNASSIGNED", machine != Solution.UNASSIGNED);
+            assertTrue("PARTITION " + p + " ON UNUSED MACHINE " + machine, solution.isMachineUsed(machine));
+
+            load[machine] += partitionSize[p];
+        }
+
+        for (int m = 0; m < load.length; m++) {
+            assertTrue("MACHINE " + m + " OVER CAPACITY", load[m] <= capacityPerMachine[m]);
+        }
+
+        assertEquals(cost, solution.getCost());
+    }
+}
@@ -0,0 +1,128 @@
+package pt.ulisboa.tecnico.hourglass.optimization.solvers.heuristic;
+
+import org.junit.Test;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.util.Solution;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Checks that the heuristic plans are feasible: every partition on a used machine, no machine over its capacity,
+ * and the cost being the one of the machines used.
+ */
+public class OptimizationSolverHeuristicTest {
+
+    private static final int[] CAPACITY_PER_TYPE = new int[]{1, 2, 4, 8, 16};
+
+    private static final int[] COST_PER_TYPE = new int[]{1000, 1900, 4100, 7900, 16500};
+
+    @Test
+    public void hotAndColdPartitions() throws Exception {
+
+        int[] partitionSize = new int[2000];
+
+        Arrays.fill(partitionSize, 0, 1000, 4);
+        Arrays.fill(partitionSize, 1000, 2000, 1);
+
+        checkFeasible(partitionSize, new int[]{1002, 502, 1252, 627, 314});
+    }
+
+    @Test
+    public void randomPartitionSizes() throws Exception {
+
+        Random random = new Random(7);
+
+        for (int run = 0; run < 20; run++) {
+
+            int[] partitionSize = new int[1 + random.nextInt(300)];
+
+            for (int p = 0; p < partitionSize.length; p++) {
+                partitionSize[p] = 1 + random.nextInt(16);
+            }
+
+            //enough machines of the largest type for one partition each
+            int[] numInstancesPerType = new int[]{random.nextInt(20), random.nextInt(20), random.nextInt(20), random.nextInt(20), partitionSize.length};
+
+            checkFeasible(partitionSize, numInstancesPerType);
+        }
+    }
+
+    @Test
+    public void singlePartition() throws Exception {
+
+        Solution solution = checkFeasible(new int[]{3}, new int[]{1, 1, 1, 1, 1});
+
+        //the cheapest machine that fits it
+        assertEquals(COST_PER_TYPE[2], solution.getCost());
+    }
+
+    @Test
+    public void zeroSizePartitions() throws Exception {
+
+        //placed on the machine the other partitions use
+        Solution solution = checkFeasible(new int[]{0, 3, 0}, new int[]{1, 1, 1, 1, 1});
+
+        assertEquals(COST_PER_TYPE[2], solution.getCost());
+
+        //on their own they only need the cheapest machine
+        solution = checkFeasible(new int[]{0, 0}, new int[]{1, 1, 1, 1, 1});
+
+        assertEquals(COST_PER_TYPE[0], solution.getCost());
+    }
+
+    private static Solution checkFeasible(int[] partitionSize, int[] numInstancesPerType) throws Exception {
+
+        int numMachines = Arrays.stream(numInstancesPerType).sum();
+
+        int[] costPerMachine = new int[numMachines];
+        int[] capacityPerMachine = new int[numMachines];
+
+        for (int t = 0, m = 0; t < numInstancesPerType.length; t++) {
+            for (int i = 0; i < numInstancesPerType[t]; i++, m++) {
+                costPerMachine[m] = COST_PER_TYPE[t];
+                capacityPerMachine[m] = CAPACITY_PER_TYPE[t];
+            }
+        }
+
+        OptimizationSolverHeuristic solver = new OptimizationSolverHeuristic();
+
+        solver.setPartitionSize(partitionSize)
+                .setCostPerMachine(costPerMachine)
+                .setCapacityPerMachine(capacityPerMachine)
+                .setNumInstancesPerType(numInstancesPerType);
+
+        solver.solve();
+
+        Solution solution = solver.getSolution();
+
+        int[] load = new int[numMachines];
+
+        for (int p = 0; p < partitionSize.length; p++) {
+
+            int machine = solution.getAssignedMachine(p);
+
+            assertTrue("PARTITION " + p + " UNASSIGNED", machine != Solution.UNASSIGNED);
+            assertTrue("PARTITION " + p + " ON UNUSED MACHINE " + machine, solution.isMachineUsed(machine));
+
+            load[machine] += partitionSize[p];
+        }
+
+        int cost = 0;
+
+        for (int m = 0; m < numMachines; m++) {
+
+            assertTrue("MACHINE " + m + " OVER CAPACITY", load[m] <= capacityPerMachine[m]);
+
+            if(solution.isMachineUsed(m)) cost += costPerMachine[m];
+        }
+
+        assertEquals(cost, solution.getCost());
+
+        return solution;
+    }
+}
@@ -0,0 +1,48 @@
+package pt.ulisboa.tecnico.hourglass.optimization.solvers.portfolio;
+
+import org.junit.Test;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.OptimizationSolver;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.heuristic.OptimizationSolverHeuristic;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.util.Solution;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Checks that the incumbents of a strategy reach both its own listener and the portfolio.
+ */
+public class OptimizationSolverPortfolioTest {
+
+    @Test
+    public void keepsTheListenerOfTheStrategy() throws Exception {
+
+        List<Solution> strategySolutions = new ArrayList<>();
+        List<Solution> portfolioSolutions = new ArrayList<>();
+
+        OptimizationSolver strategy = new OptimizationSolverHeuristic()
+                .setIncumbentListener((solution, solver) -> strategySolutions.add(solution));
+
+        OptimizationSolverPortfolio portfolio = new OptimizationSolverPortfolio(strategy)
+                .setSolutionListener((solution, solver) -> portfolioSolutions.add(solution));
+
+        portfolio.setPartitionSize(new int[]{4, 1, 1})
+                .setCostPerMachine(new int[]{1000, 1900, 4100, 7900, 16500})
+                .setCapacityPerMachine(new int[]{1, 2, 4, 8, 16})
+                .setNumInstancesPerType(new int[]{1, 1, 1, 1, 1});
+
+        //the listener is chained once, however many times the strategy solves
+        portfolio.solve();
+        portfolio.solve();
+
+        assertEquals(2, strategySolutions.size());
+        assertEquals(2, portfolioSolutions.size());
+
+        assertSame(strategySolutions.get(1), portfolio.getSolution());
+        assertSame(portfolioSolutions.get(1), portfolio.getSolution());
+    }
+}
@@ -0,0 +1,173 @@
+package pt.ulisboa.tecnico.hourglass.optimization.solvers.util;
+
+import org.junit.Test;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.OptimizationSolver;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.heuristic.OptimizationSolverHeuristic;
+import pt.ulisboa.tecnico.hourglass.optimization.solvers.metrics.SolverMetricsListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Checks the 100% rule of the price ranges and that computing them leaves the solver as it was, without printing
+ * or reporting the solves that probe the prices.
+ */
+public class PriceRangesTest {
+
+    private static final int[] BASE_PRICES = new int[]{1000, 2000, 4000};
+
+    private static final PriceRanges RANGES = new PriceRanges(BASE_PRICES, new int[]{3, 0, 1},
+            new int[]{500, 2000, 3000}, new int[]{1500, Integer.MAX_VALUE, 6000});
+
+    @Test
+    public void containsBasePrices() {
+        assertTrue(RANGES.contains(BASE_PRICES));
+    }
+
+    @Test
+    public void singlePriceChange() {
+
+        assertTrue(RANGES.contains(new int[]{1500, 2000, 4000}));
+        assertTrue(RANGES.contains(new int[]{500, 2000, 4000}));
+        assertTrue(RANGES.contains(new int[]{1000, 2000, 6000}));
+
+        assertFalse(RANGES.contains(new int[]{1501, 2000, 4000}));
+        assertFalse(RANGES.contains(new int[]{499, 2000, 4000}));
+        assertFalse(RANGES.contains(new int[]{1000, 2000, 2999}));
+    }
+
+    @Test
+    public void noAllowedChangeInADirection() {
+
+        //the unused type can only get more expensive
+        assertTrue(RANGES.contains(new int[]{1000, 1000000, 4000}));
+        assertFalse(RANGES.contains(new int[]{1000, 1999, 4000}));
+    }
+
+    @Test
+    public void simultaneousChanges() {
+
+        //half of the allowed increase of the first type and half of the allowed decrease of the last one
+        assertTrue(RANGES.contains(new int[]{1250, 2000, 3500}));
+
+        assertFalse(RANGES.contains(new int[]{1250, 2000, 3499}));
+        assertFalse(RANGES.contains(new int[]{1300, 2000, 5000}));
+    }
+
+    @Test
+    public void cost() {
+        assertEquals(3 * 1100 + 4000, RANGES.getCost(new int[]{1100, 9999, 4000}));
+    }
+
+    @Test
+    public void solverIsRestored() throws Exception {
+
+        int[] partitionSize = new int[200];
+
+        Arrays.fill(partitionSize, 0, 100, 4);
+        Arrays.fill(partitionSize, 100, 200, 1);
+
+        int[] numInstancesPerType = new int[]{102, 52, 127, 64, 33};
+        int[] costPerType = new int[]{1000, 1900, 4100, 7900, 16500};
+        int[] capacityPerType = new int[]{1, 2, 4, 8, 16};
+
+        int numMachines = Arrays.stream(numInstancesPerType).sum();
+
+        int[] costPerMachine = new int[numMachines];
+        int[] capacityPerMachine = new int[numMachines];
+
+        for (int t = 0, m = 0; t < numInstancesPerType.length; t++) {
+            for (int i = 0; i < numInstancesPerType[t]; i++, m++) {
+                costPerMachine[m] = costPerType[t];
+                capacityPerMachine[m] = capacityPerType[t];
+            }
+        }
+
+        OptimizationSolverHeuristic solver = new OptimizationSolverHeuristic();
+
+        solver.setPartitionSize(partitionSize)
+                .setCostPerMachine(costPerMachine)
+                .setCapacityPerMachine(capacityPerMachine)
+                .setNumInstancesPerType(numInstancesPerType);
+
+        solver.solve();
+
+        Solution solution = solver.getSolution();
+        int[] expectedCostPerMachine = costPerMachine.clone();
+        Map<String, Long> expectedPhaseTimes = solver.getPhaseTimes();
+
+        AtomicInteger numReports = new AtomicInteger();
+
+        solver.setMetricsListener(new CountingMetricsListener(numReports))
+                .setIncumbentListener((incumbent, strategy) -> numReports.incrementAndGet());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream stdout = System.out;
+
+        System.setOut(new PrintStream(output));
+
+        PriceRanges ranges;
+
+        try {
+            ranges = solver.calcPriceRanges(new int[]{5000, 5000, 10000, 20000, 40000});
+        } finally {
+            System.setOut(stdout);
+        }
+
+        assertEquals("", output.toString());
+        assertEquals(0, numReports.get());
+
+        assertSame(solution, solver.getSolution());
+        assertArrayEquals(expectedCostPerMachine, costPerMachine);
+        assertEquals(expectedPhaseTimes, solver.getPhaseTimes());
+        assertFalse(solver.isSolutionOptimal());
+
+        for (int t = 0; t < costPerType.length; t++) {
+            assertEquals(costPerType[t], ranges.getBasePrice(t));
+            assertTrue(ranges.getMinPrice(t) <= costPerType[t] && costPerType[t] <= ranges.getMaxPrice(t));
+        }
+
+        assertTrue(ranges.contains(costPerType));
+        assertEquals(solution.getCost(), ranges.getCost(costPerType));
+    }
+
+    private static class CountingMetricsListener implements SolverMetricsListener {
+
+        private final AtomicInteger numReports;
+
+        CountingMetricsListener(AtomicInteger numReports) {
+            this.numReports = numReports;
+        }
+
+        @Override
+        public void onPhase(OptimizationSolver solver, String phase, long nanos, long allocatedBytes) {
+            numReports.incrementAndGet();
+        }
+
+        @Override
+        public void onSubPhase(OptimizationSolver solver, String phase, String subPhase, long nanos, long allocatedBytes) {
+            numReports.incrementAndGet();
+        }
+
+        @Override
+        public void onModelSize(OptimizationSolver solver, int numVariables, int numConstraints, long numNonZeros) {
+            numReports.incrementAndGet();
+        }
+
+        @Override
+        public void onIncumbent(OptimizationSolver solver, double objective, double bestBound, long nanosSinceStart) {
+            numReports.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package pt.ulisboa.tecnico.hourglass.optimization.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Round trips a price series through its snapshot and checks that stale or damaged snapshots are ignored.
+ */
+public class PriceSnapshotTest {
+
+    private Path directory;
+
+    private Path source;
+
+    @Before
+    public void createSource() throws IOException {
+        directory = Files.createTempDirectory("price-snapshot");
+        source = Files.write(directory.resolve("prices.json"), "{}".getBytes());
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private PriceSeries writeSnapshot() throws IOException {
+
+        PriceSeries series = new PriceSeries(new long[]{1000L, 2000L, 1L << 40}, new int[]{1234, 0, 99999}, 3);
+
+        PriceSnapshot.write(source, Files.readAttributes(source, BasicFileAttributes.class), series);
+
+        return series;
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+
+        PriceSeries expected = writeSnapshot();
+        PriceSeries actual = PriceSnapshot.read(source);
+
+        assertNotNull(actual);
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getTimestamp(i), actual.getTimestamp(i));
+            assertEquals(expected.getPrice(i), actual.getPrice(i));
+        }
+    }
+
+    @Test
+    public void missingSnapshot() throws IOException {
+        assertNull(PriceSnapshot.read(source));
+    }
+
+    @Test
+    public void ignoresSnapshotOfChangedSource() throws IOException {
+
+        writeSnapshot();
+
+        Files.setLastModifiedTime(source, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 1000));
+
+        assertNull(PriceSnapshot.read(source));
+    }
+
+    @Test
+    public void ignoresTruncatedSnapshot() throws IOException {
+
+        writeSnapshot();
+
+        Path snapshot = directory.resolve("prices.json.snapshot");
+        byte[] bytes = Files.readAllBytes(snapshot);
+
+        Files.write(snapshot, Arrays.copyOf(bytes, bytes.length - 4));
+
+        assertNull(PriceSnapshot.read(source));
+    }
+}
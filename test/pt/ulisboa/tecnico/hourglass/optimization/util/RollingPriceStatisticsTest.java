@@ -0,0 +1,142 @@
+package pt.ulisboa.tecnico.hourglass.optimization.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Checks the rolling statistics against hand computed windows and against a brute force over every millisecond.
+ */
+public class RollingPriceStatisticsTest {
+
+    private static PriceSeries series(long[] timestamps, int[] prices) {
+        return new PriceSeries(timestamps, prices, timestamps.length);
+    }
+
+    @Test
+    public void weightsPricesByTimeInEffect() {
+
+        //100 for 90ms, then 1000 for 10ms
+        RollingPriceStatistics statistics = new RollingPriceStatistics(series(new long[]{0, 90}, new int[]{100, 1000}), 100);
+
+        statistics.advanceTo(100);
+
+        assertEquals(190, statistics.getMean());
+        assertEquals(1000, statistics.getMax());
+        assertEquals(100, statistics.getPercentile(0.5));
+        assertEquals(1000, statistics.getPercentile(0.95));
+        //the first data point sets the price at the window start
+        assertEquals(1, statistics.getCount());
+    }
+
+    @Test
+    public void carriesForwardThePriceBeforeTheWindow() {
+
+        RollingPriceStatistics statistics = new RollingPriceStatistics(series(new long[]{0, 150}, new int[]{500, 100}), 100);
+
+        //500 in effect for [100, 150), 100 for [150, 200]
+        statistics.advanceTo(200);
+
+        assertEquals(300, statistics.getMean());
+        assertEquals(500, statistics.getMax());
+        assertEquals(1, statistics.getCount());
+    }
+
+    @Test
+    public void emptyWindowKeepsThePriceInEffect() {
+
+        RollingPriceStatistics statistics = new RollingPriceStatistics(series(new long[]{10, 20}, new int[]{300, 400}), 50);
+
+        statistics.advanceTo(5);
+
+        assertEquals(PriceSeries.NO_PRICE, statistics.getMean());
+        assertEquals(PriceSeries.NO_PRICE, statistics.getMax());
+
+        statistics.advanceTo(1000);
+
+        assertEquals(0, statistics.getCount());
+        assertEquals(400, statistics.getMean());
+        assertEquals(400, statistics.getMax());
+        assertEquals(400, statistics.getPercentile(0.9));
+    }
+
+    @Test
+    public void matchesBruteForce() {
+
+        Random random = new Random(42);
+
+        for (int run = 0; run < 50; run++) {
+
+            int size = 1 + random.nextInt(30);
+
+            long[] timestamps = new long[size];
+            int[] prices = new int[size];
+
+            long timestamp = random.nextInt(20);
+
+            for (int i = 0; i < size; i++) {
+                timestamp += 1 + random.nextInt(20);
+                timestamps[i] = timestamp;
+                prices[i] = 1 + random.nextInt(10) * 100;
+            }
+
+            long windowMillis = 1 + random.nextInt(80);
+
+            RollingPriceStatistics statistics = new RollingPriceStatistics(series(timestamps, prices), windowMillis);
+
+            for (long time = timestamps[0]; time < timestamp + windowMillis * 2; time += 1 + random.nextInt(10)) {
+
+                statistics.advanceTo(time);
+
+                //price in effect at every millisecond of (time - windowMillis, time], the window start excluded
+                int[] perMillisecond = new int[(int) windowMillis];
+                int numMillis = 0;
+
+                for (long t = time - windowMillis + 1; t <= time; t++) {
+
+                    int price = priceAt(timestamps, prices, t);
+
+                    if(price != PriceSeries.NO_PRICE) perMillisecond[numMillis++] = price;
+                }
+
+                if(numMillis == 0) continue;
+
+                long sum = 0;
+
+                for (int i = 0; i < numMillis; i++) {
+                    sum += perMillisecond[i];
+                }
+
+                int[] sorted = Arrays.copyOf(perMillisecond, numMillis);
+                Arrays.sort(sorted);
+
+                String message = "run " + run + " at " + time;
+
+                assertEquals(message, (int) ((sum + numMillis / 2) / numMillis), statistics.getMean());
+
+                //a price set exactly at the window end is in effect, if only for an instant
+                int max = Math.max(sorted[numMillis - 1], priceAt(timestamps, prices, time + 1));
+
+                assertEquals(message, max, statistics.getMax());
+                assertEquals(message, sorted[(int) Math.ceil(0.5 * numMillis) - 1], statistics.getPercentile(0.5));
+                assertEquals(message, sorted[(int) Math.ceil(0.9 * numMillis) - 1], statistics.getPercentile(0.9));
+            }
+        }
+    }
+
+    private static int priceAt(long[] timestamps, int[] prices, long time) {
+
+        int result = PriceSeries.NO_PRICE;
+
+        for (int i = 0; i < timestamps.length && timestamps[i] < time; i++) {
+            result = prices[i];
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,119 @@
+package pt.ulisboa.tecnico.hourglass.optimization.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Checks the streaming parser against the values the JSON reader it replaced computed: timestamps as UTC dates and
+ * prices truncated to fixed point.
+ */
+public class SpotPriceHistoryParserTest {
+
+    private static final String[][] DATA_POINTS = new String[][]{
+            {"2017-04-05T18:47:53.000Z", "0.028354"},
+            {"2017-04-05T18:43:57.000Z", "0.0283"},
+            {"2017-03-31T23:59:59.999Z", "1.5"},
+            {"2016-02-29T00:00:00.000Z", "12"}};
+
+    private Path jsonFile;
+
+    @Before
+    public void createFile() throws IOException {
+        jsonFile = Files.createTempFile("spot-prices", ".json");
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(jsonFile);
+    }
+
+    private void write(String json) throws IOException {
+        Files.write(jsonFile, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void parsesDataPoints() throws IOException {
+
+        StringBuilder json = new StringBuilder("{\"NextToken\": \"a,b}\", \"SpotPriceHistory\": [");
+
+        for (int i = 0; i < DATA_POINTS.length; i++) {
+
+            if(i > 0) json.append(",\n");
+
+            //attributes in any order, the skipped ones with nested values and escapes
+            json.append("{\"InstanceType\": \"c4.large\", \"Tags\": [{\"a\": [1, 2.5e3, {\"b\": \"x\\\"y\"}], \"c\": null}], ")
+                    .append("\"SpotPrice\": \"").append(DATA_POINTS[i][1]).append("\", ")
+                    .append("\"Timestamp\": \"").append(DATA_POINTS[i][0]).append("\", \"Flag\": true}");
+        }
+
+        write(json.append("]}").toString());
+
+        PriceSeries series = SpotPriceHistoryParser.parse(jsonFile);
+
+        assertEquals(DATA_POINTS.length, series.size());
+
+        for (int i = 0; i < DATA_POINTS.length; i++) {
+            assertEquals(Instant.parse(DATA_POINTS[i][0]).toEpochMilli(), series.getTimestamp(i));
+            assertEquals(new BigDecimal(DATA_POINTS[i][1]).movePointRight(4).intValue(), series.getPrice(i));
+        }
+    }
+
+    @Test
+    public void sortsByTimestamp() throws IOException {
+
+        write("{\"SpotPriceHistory\": [{\"Timestamp\": \"2017-04-05T18:47:53.000Z\", \"SpotPrice\": \"0.2\"}, "
+                + "{\"Timestamp\": \"2017-04-05T18:43:57.000Z\", \"SpotPrice\": \"0.1\"}]}");
+
+        PriceSeries series = SpotInstancesPriceReader.parseSeries(jsonFile);
+
+        assertEquals(Instant.parse("2017-04-05T18:43:57.000Z").toEpochMilli(), series.getTimestamp(0));
+        assertEquals(1000, series.getPrice(0));
+        assertEquals(2000, series.getPrice(1));
+    }
+
+    @Test
+    public void emptyHistory() throws IOException {
+
+        write("{}");
+        assertEquals(0, SpotPriceHistoryParser.parse(jsonFile).size());
+
+        write("{\"SpotPriceHistory\": []}");
+        assertEquals(0, SpotPriceHistoryParser.parse(jsonFile).size());
+    }
+
+    @Test
+    public void rejectsMalformedFiles() throws IOException {
+
+        String[] malformed = new String[]{
+                "{\"SpotPriceHistory\": [{\"Timestamp\": \"2017-04-05T18:47:53.000Z\"}]}",
+                "{\"SpotPriceHistory\": [{\"Timestamp\": \"2017-04-05 18:47\", \"SpotPrice\": \"0.1\"}]}",
+                "{\"SpotPriceHistory\": [{\"Timestamp\": \"2017-04-05T18:47:53.000Z\", \"SpotPrice\": \"-0.1\"}]}",
+                "{\"SpotPriceHistory\": [{\"Timestamp\": \"2017-04-05T18:47:53.000Z\", \"SpotPrice\": \"0.1\"}",
+                "[]"};
+
+        for (String json : malformed) {
+
+            write(json);
+
+            try {
+                SpotPriceHistoryParser.parse(jsonFile);
+                fail("PARSED " + json);
+            } catch (IOException e) {
+                //expected
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package pt.ulisboa.tecnico.hourglass.optimization.writers;
+
+import org.junit.Test;
+import pt.ulisboa.tecnico.hourglass.optimization.writers.lp.LPFileGenerator;
+import pt.ulisboa.tecnico.hourglass.optimization.writers.mps.MPSFileGenerator;
+import pt.ulisboa.tecnico.hourglass.optimization.writers.opb.OPBFileGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Compares the generated models with the files written by the original generators for the same instance
+ * (baseline-m4.*), which used dense index matrices and string builders.
+ */
+public class FileGeneratorTest {
+
+    private static final int[] PARTITIONS_SIZE = new int[]{4, 1, 2, 1};
+
+    private static final int[] COST_PER_MACHINE = new int[]{1000, 1900, 4100, 7900, 16500};
+
+    private static final int[] CAPACITY_PER_MACHINE = new int[]{1, 2, 4, 8, 16};
+
+    /* (machine, partition) pairs */
+    private static final List<int[]> ZERO_VARS = Arrays.asList(new int[]{0, 0}, new int[]{1, 0}, new int[]{0, 2});
+
+    /* larger instance, so that every section is split in several chunks when written in parallel */
+    private static final int NUM_PARTITIONS = 300;
+
+    private static final int NUM_MACHINES = 40;
+
+    private int[] partitionsSize;
+
+    private int[] costPerMachine;
+
+    private int[] capacityPerMachine;
+
+    private List<int[]> zeroVars;
+
+    private void createLargeInstance() {
+
+        Random random = new Random(3);
+
+        partitionsSize = new int[NUM_PARTITIONS];
+        costPerMachine = new int[NUM_MACHINES];
+        capacityPerMachine = new int[NUM_MACHINES];
+        zeroVars = new ArrayList<>();
+
+        for (int p = 0; p < NUM_PARTITIONS; p++) {
+            partitionsSize[p] = random.nextBoolean() ? 4 : 1;
+        }
+
+        for (int m = 0; m < NUM_MACHINES; m++) {
+
+            capacityPerMachine[m] = 1 << (m * 5 / NUM_MACHINES);
+            costPerMachine[m] = capacityPerMachine[m] * 1000 + random.nextInt(100);
+
+            for (int p = 0; p < NUM_PARTITIONS; p++) {
+                if(random.nextInt(10) == 0) zeroVars.add(new int[]{m, p});
+            }
+        }
+    }
+
+    private static byte[] write(FileGenerator generator, int[] partitionsSize, int[] costPerMachine, int[] capacityPerMachine, List<int[]> zeroVars) throws IOException {
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+
+        generator.writeModel(result, partitionsSize, costPerMachine, capacityPerMachine, zeroVars);
+
+        return result.toByteArray();
+    }
+
+    private static byte[] readBaseline(String name) throws IOException {
+
+        try (InputStream in = FileGeneratorTest.class.getResourceAsStream(name)) {
+            return readAll(in);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+
+        for (int n; (n = in.read(buffer)) > 0; ) {
+            result.write(buffer, 0, n);
+        }
+
+        return result.toByteArray();
+    }
+
+    @Test
+    public void lpMatchesBaseline() throws IOException {
+        assertArrayEquals(readBaseline("baseline-m4.lp"), write(new LPFileGenerator(), PARTITIONS_SIZE, COST_PER_MACHINE, CAPACITY_PER_MACHINE, ZERO_VARS));
+    }
+
+    @Test
+    public void opbMatchesBaseline() throws IOException {
+        assertArrayEquals(readBaseline("baseline-m4.opb"), write(new OPBFileGenerator(), PARTITIONS_SIZE, COST_PER_MACHINE, CAPACITY_PER_MACHINE, ZERO_VARS));
+    }
+
+    @Test
+    public void lpOmittingZeroVarsMatchesSubstitution() throws IOException {
+
+        LinearModel expected = LinearModel.readLP(write(new LPFileGenerator(), PARTITIONS_SIZE, COST_PER_MACHINE, CAPACITY_PER_MACHINE, ZERO_VARS));
+        LinearModel actual = LinearModel.readLP(write(new LPFileGenerator().setOmitZeroVars(true), PARTITIONS_SIZE, COST_PER_MACHINE, CAPACITY_PER_MACHINE, ZERO_VARS));
+
+        assertEquals(expected.withoutZeroVars(), actual);
+    }
+
+    @Test
+    public void lpParallelMatchesSequential() throws IOException {
+
+        createLargeInstance();
+
+        assertArrayEquals(write(new LPFileGenerator(), partitionsSize, costPerMachine, capacityPerMachine, zeroVars),
+                write(new LPFileGenerator().setParallel(true), partitionsSize, costPerMachine, capacityPerMachine, zeroVars));
+    }
+
+    @Test
+    public void opbParallelMatchesSequential() throws IOException {
+
+        createLargeInstance();
+
+        assertArrayEquals(write(new OPBFileGenerator().setOmitZeroVars(true), partitionsSize, costPerMachine, capacityPerMachine, zeroVars),
+                write(new OPBFileGenerator().setOmitZeroVars(true).setParallel(true), partitionsSize, costPerMachine, capacityPerMachine, zeroVars));
+    }
+
+    @Test
+    public void mpsMatchesLp() throws IOException {
+
+        assertEquals(LinearModel.readLP(write(new LPFileGenerator(), PARTITIONS_SIZE, COST_PER_MACHINE, CAPACITY_PER_MACHINE, ZERO_VARS)),
+                LinearModel.readMPS(write(new MPSFileGenerator(), PARTITIONS_SIZE, COST_PER_MACHINE, CAPACITY_PER_MACHINE, ZERO_VARS)));
+
+        createLargeInstance();
+
+        assertEquals(LinearModel.readLP(write(new LPFileGenerator(), partitionsSize, costPerMachine, capacityPerMachine, zeroVars)),
+                LinearModel.readMPS(write(new MPSFileGenerator(), partitionsSize, costPerMachine, capacityPerMachine, zeroVars)));
+    }
+
+    @Test
+    public void mpsOmittingZeroVarsMatchesSubstitution() throws IOException {
+
+        LinearModel expected = LinearModel.readMPS(write(new MPSFileGenerator(), PARTITIONS_SIZE, COST_PER_MACHINE, CAPACITY_PER_MACHINE, ZERO_VARS));
+        LinearModel actual = LinearModel.readMPS(write(new MPSFileGenerator().setOmitZeroVars(true), PARTITIONS_SIZE, COST_PER_MACHINE, CAPACITY_PER_MACHINE, ZERO_VARS));
+
+        assertEquals(expected.withoutZeroVars(), actual);
+    }
+
+    @Test
+    public void mpsParallelMatchesSequential() throws IOException {
+
+        createLargeInstance();
+
+        assertArrayEquals(write(new MPSFileGenerator(), partitionsSize, costPerMachine, capacityPerMachine, zeroVars),
+                write(new MPSFileGenerator().setParallel(true), partitionsSize, costPerMachine, capacityPerMachine, zeroVars));
+    }
+
+    @Test
+    public void gzipDecompressesToPlainModel() throws IOException {
+
+        createLargeInstance();
+
+        byte[] compressed = write(new LPFileGenerator().setParallel(true).setCompression(FileGenerator.Compression.GZIP), partitionsSize, costPerMachine, capacityPerMachine, zeroVars);
+
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertArrayEquals(write(new LPFileGenerator(), partitionsSize, costPerMachine, capacityPerMachine, zeroVars), readAll(in));
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package pt.ulisboa.tecnico.hourglass.optimization.writers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Created by Pedro Joaquim.
+ *
+ * Generated model (LP or free MPS) read back into its objective, named rows and binary variables, so that files written in
+ * different ways can be compared by content. Variables fixed to zero are kept apart, whether they were written as
+ * single variable "= 0" rows or left out.
+ */
+class LinearModel {
+
+    private final Map<Long, Long> objective = new TreeMap<>();
+
+    private final Map<String, Row> rows = new TreeMap<>();
+
+    private final Set<Long> binaries = new TreeSet<>();
+
+    private final Set<Long> zeroVars = new TreeSet<>();
+
+    private static class Row {
+
+        private final Map<Long, Long> terms = new TreeMap<>();
+
+        private String sense;
+
+        private long rhs;
+
+        @Override
+        public boolean equals(Object o) {
+
+            if(!(o instanceof Row)) return false;
+
+            Row row = (Row) o;
+
+            return terms.equals(row.terms) && sense.equals(row.sense) && rhs == row.rhs;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(terms, sense, rhs);
+        }
+
+        @Override
+        public String toString() {
+            return terms + " " + sense + " " + rhs;
+        }
+    }
+
+    /**
+     * Reads a file written by the LP generator: "Minimize", "Subject To" with rows named "Cn:", "Binaries", "End".
+     */
+    static LinearModel readLP(byte[] file) {
+
+        LinearModel result = new LinearModel();
+
+        String[] tokens = new String(file, StandardCharsets.US_ASCII).trim().split("\\s+");
+
+        String section = null;
+
+        Row row = null;
+        String rowName = null;
+
+        long sign = 1;
+        long coefficient = 1;
+
+        for (int i = 0; i < tokens.length; i++) {
+
+            String token = tokens[i];
+
+            switch (token) {
+                case "Minimize":
+                case "Binaries":
+                case "End":
+                    section = token;
+                    continue;
+                case "Subject":
+                    section = "Subject To";
+                    i++;
+                    continue;
+            }
+
+            if(section.equals("Binaries")) {
+                result.binaries.add(parseVar(token));
+                continue;
+            }
+
+            if(token.endsWith(":")) {
+                rowName = token.substring(0, token.length() - 1);
+                row = new Row();
+                continue;
+            }
+
+            if(token.equals("+") || token.equals("-")) {
+                sign = token.equals("+") ? 1 : -1;
+            } else if(token.startsWith("x")) {
+                (section.equals("Minimize") ? result.objective : row.terms).merge(parseVar(token), sign * coefficient, Long::sum);
+                sign = 1;
+                coefficient = 1;
+            } else if(token.equals("<=") || token.equals(">=") || token.equals("=")) {
+                row.sense = token;
+                row.rhs = Long.parseLong(tokens[++i]);
+                result.addRow(rowName, row);
+            } else {
+                coefficient = Long.parseLong(token);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads a free MPS file written by the MPS generator, whose rows are named as the ones of the LP file.
+     */
+    static LinearModel readMPS(byte[] file) {
+
+        LinearModel result = new LinearModel();
+
+        Map<String, String> senses = new TreeMap<>();
+        String objectiveRow = null;
+
+        String section = null;
+
+        for (String line : new String(file, StandardCharsets.US_ASCII).split("\n")) {
+
+            String[] fields = line.trim().split("\\s+");
+
+            if(!line.startsWith(" ")) {
+                section = fields[0];
+                continue;
+            }
+
+            switch (section) {
+                case "ROWS":
+                    if(fields[0].equals("N")) {
+                        objectiveRow = fields[1];
+                    } else {
+                        senses.put(fields[1], fields[0].equals("E") ? "=" : fields[0].equals("L") ? "<=" : ">=");
+                        result.rows.put(fields[1], new Row());
+                    }
+                    break;
+                case "COLUMNS":
+                    if(fields[0].equals("MARKER")) break;
+                    long var = parseVar(fields[0]);
+                    long coefficient = Long.parseLong(fields[2]);
+                    (fields[1].equals(objectiveRow) ? result.objective : result.rows.get(fields[1]).terms).put(var, coefficient);
+                    break;
+                case "RHS":
+                    result.rows.get(fields[1]).rhs = Long.parseLong(fields[2]);
+                    break;
+                case "BOUNDS":
+                    result.binaries.add(parseVar(fields[2]));
+                    if(fields[0].equals("FX")) result.zeroVars.add(parseVar(fields[2]));
+                    break;
+            }
+        }
+
+        for (Map.Entry<String, Row> entry : result.rows.entrySet()) {
+            entry.getValue().sense = senses.get(entry.getKey());
+        }
+
+        return result;
+    }
+
+    private void addRow(String name, Row row) {
+
+        //the zero fixed variables written as constraints
+        if(row.terms.size() == 1 && row.sense.equals("=") && row.rhs == 0 && row.terms.values().iterator().next() == 1) {
+            zeroVars.add(row.terms.keySet().iterator().next());
+            return;
+        }
+
+        rows.put(name, row);
+    }
+
+    private static long parseVar(String token) {
+        return Long.parseLong(token.substring(1));
+    }
+
+    /**
+     * @return the model with the zero fixed variables replaced by 0, dropping the rows left without any positive
+     * term, which binary variables always satisfy
+     */
+    LinearModel withoutZeroVars() {
+
+        LinearModel result = new LinearModel();
+
+        result.objective.putAll(objective);
+        result.objective.keySet().removeAll(zeroVars);
+
+        result.binaries.addAll(binaries);
+        result.binaries.removeAll(zeroVars);
+
+        for (Map.Entry<String, Row> entry : rows.entrySet()) {
+
+            Row row = new Row();
+
+            row.terms.putAll(entry.getValue().terms);
+            row.terms.keySet().removeAll(zeroVars);
+            row.sense = entry.getValue().sense;
+            row.rhs = entry.getValue().rhs;
+
+            if(!isAlwaysSatisfied(row)) result.rows.put(entry.getKey(), row);
+        }
+
+        return result;
+    }
+
+    /**
+     * e.g. "- 1 x1 <= 0" once the assignment variable of a machine usage row is gone
+     */
+    private static boolean isAlwaysSatisfied(Row row) {
+
+        if(!row.sense.equals("<=") || row.rhs < 0) return false;
+
+        for (long coefficient : row.terms.values()) {
+            if(coefficient > 0) return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if(!(o instanceof LinearModel)) return false;
+
+        LinearModel model = (LinearModel) o;
+
+        return objective.equals(model.objective) && rows.equals(model.rows) && binaries.equals(model.binaries) && zeroVars.equals(model.zeroVars);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(objective, rows, binaries, zeroVars);
+    }
+
+    @Override
+    public String toString() {
+        return "objective " + objective + "\nrows " + rows + "\nbinaries " + binaries + "\nzero vars " + zeroVars;
+    }
+}